@@ -0,0 +1,69 @@
+package karsaib.lotto;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Pipeline stages over the bundled hatos.csv (6/45)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BundledHistoryBenchmark {
+
+    @Param("../hatos.csv")
+    public String csv;
+
+    private Pipeline pipeline;
+    private final ReportSink html = new HtmlReport();
+    private final ReportSink json = new JsonReport();
+
+    @Setup
+    public void setUp() throws IOException {
+        pipeline = new Pipeline(Path.of(csv), Game.HATOS);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pipeline.close();
+    }
+
+    @Benchmark
+    public int parse() throws IOException {
+        return pipeline.parse();
+    }
+
+    @Benchmark
+    public StatsAccumulator accumulate() {
+        return pipeline.accumulate();
+    }
+
+    @Benchmark
+    public NumberStats stats() {
+        return pipeline.stats();
+    }
+
+    @Benchmark
+    public long htmlReport() throws IOException {
+        return pipeline.report(html);
+    }
+
+    @Benchmark
+    public long jsonReport() throws IOException {
+        return pipeline.report(json);
+    }
+}
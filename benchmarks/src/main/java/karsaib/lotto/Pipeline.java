@@ -0,0 +1,83 @@
+package karsaib.lotto;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Stages of the pipeline over one CSV history, shared by the benchmarks:
+ * parse (mapped file -> statistics), accumulate (rows -> statistics), stats
+ * (gap derivation, weighted score and ranking) and the reports. The report
+ * is built like Main.report, from a draw store of the history in a temp file
+ * (pairs, windows and the year / month / weekday partitions).
+ */
+final class Pipeline implements Closeable {
+
+    // Windows of the report (see WindowIndex.parse)
+    private static final String WINDOWS = "100,1000";
+
+    private final Path csv;
+    private final Game game;
+    private final Path storePath;
+    private final int[][] rows;
+    private final StatsAccumulator accumulator;
+    private final Report report;
+
+    Pipeline(Path csv, Game game) throws IOException {
+        this.csv = csv;
+        this.game = game;
+
+        List<int[]> parsed = new ArrayList<>();
+        CsvDrawParser parser = new CsvDrawParser(game);
+        MappedCsvReader.forEachLine(csv, (buffer, from, to) -> {
+            if (parser.parseLine(buffer, from, to)) {
+                parsed.add(parser.row().clone());
+            }
+            return true;
+        });
+        this.rows = parsed.toArray(new int[0][]);
+        this.accumulator = accumulate();
+
+        this.storePath = Files.createTempFile("lotto-" + game.id, ".draws");
+        Metrics metrics = new Metrics(game);
+        Main.parseCsvContent(csv, game, storePath, metrics.start(Metrics.Phase.PARSE));
+        this.report = Main.buildReport(game, accumulator, DrawStore.open(storePath), false, WINDOWS, metrics);
+    }
+
+    // CSV file to statistics, like the --file mode
+    int parse() throws IOException {
+        CsvDrawParser parser = new CsvDrawParser(game);
+        StatsAccumulator stats = new StatsAccumulator(game.maxNumber);
+        MappedCsvReader.forEachLine(csv, (buffer, from, to) -> {
+            if (parser.parseLine(buffer, from, to)) {
+                stats.accept(parser.row());
+            }
+            return true;
+        });
+        return stats.rows();
+    }
+
+    StatsAccumulator accumulate() {
+        StatsAccumulator stats = new StatsAccumulator(game.maxNumber);
+        stats.acceptAll(rows);
+        return stats;
+    }
+
+    NumberStats stats() {
+        return NumberStats.of(accumulator);
+    }
+
+    long report(ReportSink sink) throws IOException {
+        CountingWriter writer = new CountingWriter();
+        sink.write(report, writer);
+        return writer.count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Files.deleteIfExists(storePath);
+    }
+}
@@ -0,0 +1,78 @@
+package karsaib.lotto;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Pipeline stages over synthetic histories of every game shape (90/5, 45/6, 35/14)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SyntheticHistoryBenchmark {
+
+    @Param({"5", "6", "7"})
+    public String mode;
+
+    @Param({"10000", "100000", "1000000"})
+    public int draws;
+
+    private Path csv;
+    private Pipeline pipeline;
+    private final ReportSink html = new HtmlReport();
+    private final ReportSink json = new JsonReport();
+
+    @Setup
+    public void setUp() throws IOException {
+        Game game = Game.ofMode(mode);
+        csv = Files.createTempFile("lotto-" + game.id + "-" + draws, ".csv");
+        SyntheticHistory.write(csv, game, draws, 42L);
+        pipeline = new Pipeline(csv, game);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pipeline.close();
+        Files.deleteIfExists(csv);
+    }
+
+    @Benchmark
+    public int parse() throws IOException {
+        return pipeline.parse();
+    }
+
+    @Benchmark
+    public StatsAccumulator accumulate() {
+        return pipeline.accumulate();
+    }
+
+    @Benchmark
+    public NumberStats stats() {
+        return pipeline.stats();
+    }
+
+    @Benchmark
+    public long htmlReport() throws IOException {
+        return pipeline.report(html);
+    }
+
+    @Benchmark
+    public long jsonReport() throws IOException {
+        return pipeline.report(json);
+    }
+}
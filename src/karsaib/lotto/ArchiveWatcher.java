@@ -0,0 +1,115 @@
+package karsaib.lotto;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Watches a directory for the CSV exports of the games (a .csv file whose
+ * name has the game id, e.g. hatos.csv or sim-otos.csv) and hands every
+ * created, modified or deleted one to the listener.
+ *
+ * Copying a file raises a burst of events; the changed files are collected
+ * until the directory has been quiet for DEBOUNCE, then each is handed over
+ * once. The exports already in the directory are handed over at the start.
+ * A failing file is reported and skipped, its next change is tried again.
+ */
+final class ArchiveWatcher {
+
+    // Quiet time that ends a burst of events
+    static final Duration DEBOUNCE = Duration.ofMillis(500);
+
+    // Gets a changed export of the game (the file may be gone)
+    interface Listener {
+        void changed(Game game, Path file) throws IOException;
+    }
+
+    private ArchiveWatcher() {
+    }
+
+    // -------------------------------------------------------------------------
+    // Watch until the thread is interrupted
+    // -------------------------------------------------------------------------
+    static void watch(Path dir, List<Game> games, Listener listener) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            throw new IOException("Not a directory: " + dir);
+        }
+        try (WatchService service = dir.getFileSystem().newWatchService()) {
+            dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+
+            Set<Path> changed = new TreeSet<>();
+            scan(dir, changed);
+            System.out.println("Watching " + dir.toAbsolutePath() + " ..");
+            while (true) {
+                dispatch(changed, games, listener);
+
+                WatchKey key = service.take();
+                do {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            scan(dir, changed);
+                        } else {
+                            changed.add(dir.resolve((Path) event.context()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        throw new IOException("Directory is not watched any more: " + dir);
+                    }
+                    key = service.poll(DEBOUNCE.toMillis(), TimeUnit.MILLISECONDS);
+                } while (key != null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Every file of the directory (start, or events were lost)
+    private static void scan(Path dir, Set<Path> changed) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                changed.add(file);
+            }
+        }
+    }
+
+    private static void dispatch(Set<Path> changed, List<Game> games, Listener listener) {
+        for (Path file : changed) {
+            Game game = gameOf(file, games);
+            if (game == null) {
+                continue;
+            }
+            try {
+                listener.changed(game, file);
+            } catch (IOException | RuntimeException e) {
+                System.out.println(file + ": failed (" + e + ")");
+            }
+        }
+        changed.clear();
+    }
+
+    // Game of an export by its file name, null if it is none of the games
+    static Game gameOf(Path file, List<Game> games) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (!name.endsWith(".csv")) {
+            return null;
+        }
+        for (Game game : games) {
+            if (name.contains(game.id)) {
+                return game;
+            }
+        }
+        return null;
+    }
+}
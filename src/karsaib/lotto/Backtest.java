@@ -0,0 +1,296 @@
+package karsaib.lotto;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Walk-forward backtest of the weighted score: for every draw t the numbers
+ * are ranked from the draws older than t only, and the top K of the ranking
+ * is checked against draw t.
+ *
+ * The statistics are not rebuilt per draw: the walk adds one draw at a time
+ * to a StatsAccumulator (acceptNewer), so a step costs O(maxNumber). The
+ * history is cut into chunks; a cheap sequential pass saves a checkpoint of
+ * the accumulator at every chunk start, then the chunks are walked in
+ * parallel on the fork-join pool.
+ *
+ * The walk keeps the normalized score factors of every draw in one flat
+ * double array (read-only afterwards), so a ScoreModel is evaluated over the
+ * whole history without touching the statistics again (see WeightSearch).
+ */
+final class Backtest {
+
+    // Draws needed before the first scored draw
+    static final int WARMUP = 50;
+
+    final int maxNumber;
+    final int warmup;
+    private final int[][] rows;
+    // Score factors of draw t at (t - warmup) * stride + num * FEATURES
+    private final int stride;
+    private final double[] features;
+    // Distinct numbers of the draw (for the random baseline)
+    private final int[] distinct;
+
+    private Backtest(int[][] rows, int maxNumber) {
+        this.maxNumber = maxNumber;
+        this.rows = rows;
+        this.warmup = Math.min(WARMUP, Math.max(rows.length - 1, 1));
+        this.stride = (maxNumber + 1) * NumberStats.FEATURES;
+        this.features = new double[Math.max(0, rows.length - warmup) * stride];
+        this.distinct = new int[rows.length];
+
+        int chunks = chunks(rows.length);
+        int chunkSize = (rows.length + chunks - 1) / chunks;
+
+        // Checkpoints: state before the first draw of each chunk
+        StatsAccumulator acc = new StatsAccumulator(maxNumber);
+        StatsAccumulator[] checkpoints = new StatsAccumulator[chunks];
+        for (int t = 0; t < rows.length; t++) {
+            if (t % chunkSize == 0) {
+                checkpoints[t / chunkSize] = acc.copy();
+            }
+            acc.acceptNewer(rows[t]);
+        }
+
+        ForkJoinPool.commonPool().invoke(new Walk(checkpoints, chunkSize, 0, chunks));
+    }
+
+    // rows oldest first
+    static Backtest of(int[][] rows, int maxNumber) {
+        return new Backtest(rows, maxNumber);
+    }
+
+    private static int chunks(int draws) {
+        return Math.max(1, Math.min(draws, ForkJoinPool.getCommonPoolParallelism() * 4));
+    }
+
+    // -------------------------------------------------------------------------
+    // Parallel walk over the chunks (score factors of every draw)
+    // -------------------------------------------------------------------------
+    @SuppressWarnings("serial")
+    private final class Walk extends RecursiveAction {
+
+        private final StatsAccumulator[] checkpoints;
+        private final int chunkSize;
+        private final int from;
+        private final int to;
+
+        Walk(StatsAccumulator[] checkpoints, int chunkSize, int from, int to) {
+            this.checkpoints = checkpoints;
+            this.chunkSize = chunkSize;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Walk(checkpoints, chunkSize, from, mid),
+                        new Walk(checkpoints, chunkSize, mid, to));
+                return;
+            }
+            StatsAccumulator acc = checkpoints[from];
+            boolean[] seen = new boolean[maxNumber + 1];
+            // Scratch of the factors, reused on every draw of the chunk
+            int[] sinceLast = new int[maxNumber + 1];
+            double[] avgGap = new double[maxNumber + 1];
+            double[] cycleFactor = new double[maxNumber + 1];
+            int end = Math.min(rows.length, (from + 1) * chunkSize);
+
+            for (int t = from * chunkSize; t < end; t++) {
+                if (t >= warmup) {
+                    NumberStats.features(acc, sinceLast, avgGap, cycleFactor, features, (t - warmup) * stride);
+                }
+                distinct[t] = countDistinct(rows[t], seen);
+                acc.acceptNewer(rows[t]);
+            }
+        }
+
+        private int countDistinct(int[] row, boolean[] seen) {
+            int count = 0;
+            for (int num : row) {
+                if (!seen[num]) {
+                    seen[num] = true;
+                    count++;
+                }
+            }
+            for (int num : row) {
+                seen[num] = false;
+            }
+            return count;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Evaluate a model
+    // -------------------------------------------------------------------------
+    int draws() {
+        return rows.length;
+    }
+
+    // Hits of the model's top K per draw, in parallel over the draws
+    Result run(ScoreModel model, int topK) {
+        int[] hits = new int[rows.length];
+        int chunks = chunks(rows.length);
+        int chunkSize = (rows.length + chunks - 1) / chunks;
+        ForkJoinPool.commonPool().invoke(new Score(model, topK, hits, chunkSize, 0, chunks));
+        return new Result(topK, hits);
+    }
+
+    // Total hits of the model's top K on the calling thread (for parallel callers)
+    int totalHits(ScoreModel model, int topK, Scratch scratch) {
+        int total = 0;
+        for (int t = warmup; t < rows.length; t++) {
+            total += hits(t, model, topK, scratch);
+        }
+        return total;
+    }
+
+    // Work arrays of one thread
+    static final class Scratch {
+
+        private final int[] best;
+        private final double[] bestScore;
+        private final boolean[] picked;
+
+        Scratch(int maxNumber, int topK) {
+            this.best = new int[topK];
+            this.bestScore = new double[topK];
+            this.picked = new boolean[maxNumber + 1];
+        }
+    }
+
+    // Top K of draw t by bounded insertion (ties: smaller number first, like
+    // the ranking of NumberStats), then the picked numbers found in the draw
+    private int hits(int t, ScoreModel model, int topK, Scratch scratch) {
+        int base = (t - warmup) * stride;
+        int size = 0;
+        for (int num = 1; num <= maxNumber; num++) {
+            int offset = base + num * NumberStats.FEATURES;
+            if (features[offset] == 0.0) continue; // never drawn
+            double score = model.score(features, offset);
+            if (size == topK && !(score > scratch.bestScore[size - 1])) continue;
+
+            int i = size < topK ? size++ : size - 1;
+            while (i > 0 && scratch.bestScore[i - 1] < score) {
+                scratch.best[i] = scratch.best[i - 1];
+                scratch.bestScore[i] = scratch.bestScore[i - 1];
+                i--;
+            }
+            scratch.best[i] = num;
+            scratch.bestScore[i] = score;
+        }
+
+        for (int i = 0; i < size; i++) {
+            scratch.picked[scratch.best[i]] = true;
+        }
+        int hits = 0;
+        for (int num : rows[t]) {
+            // A number is counted once
+            if (scratch.picked[num]) {
+                scratch.picked[num] = false;
+                hits++;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            scratch.picked[scratch.best[i]] = false;
+        }
+        return hits;
+    }
+
+    @SuppressWarnings("serial")
+    private final class Score extends RecursiveAction {
+
+        private final ScoreModel model;
+        private final int topK;
+        private final int[] hits;
+        private final int chunkSize;
+        private final int from;
+        private final int to;
+
+        Score(ScoreModel model, int topK, int[] hits, int chunkSize, int from, int to) {
+            this.model = model;
+            this.topK = topK;
+            this.hits = hits;
+            this.chunkSize = chunkSize;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Score(model, topK, hits, chunkSize, from, mid),
+                        new Score(model, topK, hits, chunkSize, mid, to));
+                return;
+            }
+            Scratch scratch = new Scratch(maxNumber, topK);
+            int end = Math.min(rows.length, (from + 1) * chunkSize);
+            for (int t = from * chunkSize; t < end; t++) {
+                hits[t] = t < warmup ? -1 : hits(t, model, topK, scratch);
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Hits of one model
+    // -------------------------------------------------------------------------
+    final class Result {
+
+        final int topK;
+        // Hits of the top K per draw (oldest first), -1 for the warmup draws
+        private final int[] hits;
+
+        private Result(int topK, int[] hits) {
+            this.topK = topK;
+            this.hits = hits;
+        }
+
+        int draws() {
+            return hits.length;
+        }
+
+        int warmup() {
+            return warmup;
+        }
+
+        // Hits of draw t, -1 if it was not scored (warmup)
+        int hits(int t) {
+            return hits[t];
+        }
+
+        int scoredDraws(int from, int to) {
+            return Math.max(0, to - Math.max(from, warmup));
+        }
+
+        // Sum of the hits of the scored draws in [from, to)
+        int totalHits(int from, int to) {
+            int sum = 0;
+            for (int t = Math.max(from, warmup); t < to; t++) {
+                sum += hits[t];
+            }
+            return sum;
+        }
+
+        // Expected hits of K random numbers over the scored draws in [from, to)
+        double expectedHits(int from, int to) {
+            double sum = 0;
+            for (int t = Math.max(from, warmup); t < to; t++) {
+                sum += (double) topK * distinct[t] / maxNumber;
+            }
+            return sum;
+        }
+
+        // Number of scored draws with exactly h hits
+        int[] hitDistribution() {
+            int[] counts = new int[topK + 1];
+            for (int t = warmup; t < hits.length; t++) {
+                counts[Math.min(hits[t], topK)]++;
+            }
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package karsaib.lotto;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Pair (and optionally triple) co-occurrence statistics: how often the numbers
+ * were drawn together and how many draws ago they were drawn together last.
+ *
+ * Every number gets a bitmap over the draw positions (one per drawing, so the
+ * Skandi machine and manual drawings are counted separately). A pair count is
+ * popcount(bitmap[a] & bitmap[b]) over the words, the last common draw is the
+ * highest set bit. The combinations are scanned on the fork-join pool and the
+ * results go to flat int arrays indexed by the combination rank, so no object
+ * is created per combination.
+ */
+final class CoOccurrence {
+
+    final int maxNumber;
+    final int totalRows;
+    private final int drawings;
+    private final int words;
+    // Bitmap of draw positions: ((drawing * (maxNumber + 1)) + num) * words + word
+    private final long[] columns;
+    // C(n, k) for the combination ranks
+    private final int[][] binomial;
+
+    private final int[] pairCount;
+    private final int[] pairSince;
+    private final int[] tripleCount;
+    private final int[] tripleSince;
+
+    private CoOccurrence(DrawStore store, boolean triples) {
+        this.maxNumber = store.maxNumber;
+        this.totalRows = store.size();
+        this.drawings = store.numbersPerRow / store.numbersPerDraw;
+        this.words = (totalRows + Long.SIZE - 1) / Long.SIZE;
+        this.columns = new long[drawings * (maxNumber + 1) * words];
+        this.binomial = binomialTable(maxNumber + 1, 3);
+
+        // Transpose the draw bitmasks into per-number bitmaps
+        for (int i = 0; i < totalRows; i++) {
+            for (int d = 0; d < drawings; d++) {
+                for (int w = 0; w < store.wordsPerDraw; w++) {
+                    long word = store.word(i, d * store.wordsPerDraw + w);
+                    while (word != 0) {
+                        int num = w * Long.SIZE + Long.numberOfTrailingZeros(word) + 1;
+                        columns[(d * (maxNumber + 1) + num) * words + i / Long.SIZE] |= 1L << i;
+                        word &= word - 1;
+                    }
+                }
+            }
+        }
+
+        this.pairCount = new int[binomial[maxNumber][2]];
+        this.pairSince = new int[pairCount.length];
+        this.tripleCount = triples ? new int[binomial[maxNumber][3]] : null;
+        this.tripleSince = triples ? new int[tripleCount.length] : null;
+
+        ForkJoinPool.commonPool().invoke(new Scan(1, maxNumber + 1));
+    }
+
+    static CoOccurrence of(DrawStore store, boolean triples) {
+        return new CoOccurrence(store, triples);
+    }
+
+    private static int[][] binomialTable(int n, int k) {
+        int[][] c = new int[n + 1][k + 1];
+        for (int i = 0; i <= n; i++) {
+            c[i][0] = 1;
+            for (int j = 1; j <= Math.min(i, k); j++) {
+                c[i][j] = c[i - 1][j - 1] + (j <= i - 1 ? c[i - 1][j] : 0);
+            }
+        }
+        return c;
+    }
+
+    // -------------------------------------------------------------------------
+    // Combination ranks (colex, numbers 1 based, a < b < c)
+    // -------------------------------------------------------------------------
+    private int pairRank(int a, int b) {
+        return binomial[a - 1][1] + binomial[b - 1][2];
+    }
+
+    private int tripleRank(int a, int b, int c) {
+        return binomial[a - 1][1] + binomial[b - 1][2] + binomial[c - 1][3];
+    }
+
+    // -------------------------------------------------------------------------
+    // Parallel scan, split over the first number of the combination
+    // -------------------------------------------------------------------------
+    @SuppressWarnings("serial")
+    private final class Scan extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+        private int lastCount;
+
+        Scan(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Scan(from, mid), new Scan(mid, to));
+                return;
+            }
+            long[] common = new long[drawings * words];
+            int a = from;
+            for (int b = a + 1; b <= maxNumber; b++) {
+                int rank = pairRank(a, b);
+                int last = and(common, a, b);
+                pairCount[rank] = count(common);
+                pairSince[rank] = last < 0 ? -1 : totalRows - 1 - last;
+
+                if (tripleCount != null) {
+                    for (int c = b + 1; c <= maxNumber; c++) {
+                        int tripleRank = tripleRank(a, b, c);
+                        tripleCount[tripleRank] = andCount(common, c);
+                        int lastTriple = lastCount;
+                        tripleSince[tripleRank] = lastTriple < 0 ? -1 : totalRows - 1 - lastTriple;
+                    }
+                }
+            }
+        }
+
+        // common = bitmap[a] & bitmap[b] per drawing, returns the last common position
+        private int and(long[] common, int a, int b) {
+            int last = -1;
+            for (int d = 0; d < drawings; d++) {
+                int ca = (d * (maxNumber + 1) + a) * words;
+                int cb = (d * (maxNumber + 1) + b) * words;
+                for (int w = 0; w < words; w++) {
+                    long word = columns[ca + w] & columns[cb + w];
+                    common[d * words + w] = word;
+                    if (word != 0) {
+                        last = Math.max(last, w * Long.SIZE + 63 - Long.numberOfLeadingZeros(word));
+                    }
+                }
+            }
+            return last;
+        }
+
+        private int count(long[] common) {
+            int count = 0;
+            for (long word : common) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+
+        // popcount(common & bitmap[c]); the last common position goes to lastCount
+        private int andCount(long[] common, int c) {
+            int count = 0;
+            int last = -1;
+            for (int d = 0; d < drawings; d++) {
+                int cc = (d * (maxNumber + 1) + c) * words;
+                for (int w = 0; w < words; w++) {
+                    long word = common[d * words + w] & columns[cc + w];
+                    if (word != 0) {
+                        count += Long.bitCount(word);
+                        last = Math.max(last, w * Long.SIZE + 63 - Long.numberOfLeadingZeros(word));
+                    }
+                }
+            }
+            lastCount = last;
+            return count;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Top-N combinations by count (ties: drawn together more recently first).
+    // Returns the numbers of each combination, k per row.
+    // -------------------------------------------------------------------------
+    boolean hasTriples() {
+        return tripleCount != null;
+    }
+
+    int[][] topPairs(int n) {
+        return top(n, 2);
+    }
+
+    int[][] topTriples(int n) {
+        return top(n, 3);
+    }
+
+    int pairCount(int a, int b) {
+        return pairCount[pairRank(a, b)];
+    }
+
+    int pairSince(int a, int b) {
+        return pairSince[pairRank(a, b)];
+    }
+
+    int tripleCount(int a, int b, int c) {
+        return tripleCount[tripleRank(a, b, c)];
+    }
+
+    int tripleSince(int a, int b, int c) {
+        return tripleSince[tripleRank(a, b, c)];
+    }
+
+    private int[][] top(int n, int k) {
+        int[] counts = k == 2 ? pairCount : tripleCount;
+        int[] since = k == 2 ? pairSince : tripleSince;
+        int[] best = new int[Math.min(n, counts.length)];
+        int size = 0;
+
+        // Bounded insertion into the best ranks
+        for (int rank = 0; rank < counts.length; rank++) {
+            if (size == best.length && !better(counts, since, rank, best[size - 1])) continue;
+            int i = size < best.length ? size++ : size - 1;
+            while (i > 0 && better(counts, since, rank, best[i - 1])) {
+                best[i] = best[i - 1];
+                i--;
+            }
+            best[i] = rank;
+        }
+
+        int[][] result = new int[size][];
+        for (int i = 0; i < size; i++) {
+            result[i] = unrank(best[i], k);
+        }
+        return result;
+    }
+
+    private static boolean better(int[] counts, int[] since, int rank, int other) {
+        if (counts[rank] != counts[other]) return counts[rank] > counts[other];
+        return Integer.compareUnsigned(since[rank], since[other]) < 0;
+    }
+
+    private int[] unrank(int rank, int k) {
+        int[] combination = new int[k];
+        for (int j = k; j >= 1; j--) {
+            int x = j;
+            while (x + 1 <= maxNumber && binomial[x][j] <= rank) x++;
+            combination[j - 1] = x;
+            rank -= binomial[x - 1][j];
+        }
+        return combination;
+    }
+}
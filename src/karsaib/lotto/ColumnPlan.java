@@ -0,0 +1,62 @@
+package karsaib.lotto;
+
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Column layout of a draw history export: the index of the year, week,
+ * weekday and date columns and of the first of the numbersPerRow number
+ * columns. Every game declares its plan (Game.columns); a file with a header
+ * line may name its columns instead. The plan is fixed once per file
+ * (CsvDrawParser), the lines are then read at these indexes only.
+ *
+ * Indexes count from the left, so a column after the numbers (the bonus
+ * number of the old 6/45 rows) is never read as a number.
+ */
+record ColumnPlan(int year, int week, int weekday, int date, int numbers) {
+
+    // No such column
+    static final int NONE = -1;
+
+    // Columns a draw line must have
+    int width(int numbersPerRow) {
+        return numbers + numbersPerRow;
+    }
+
+    // First (winners;prize) column pair, right after the key columns
+    int firstPrize() {
+        return Math.max(Math.max(year, week), Math.max(weekday, date)) + 1;
+    }
+
+    // (winners;prize) pairs between the key columns and the numbers
+    int prizeTiers() {
+        return Math.max(0, (numbers - firstPrize()) / 2);
+    }
+
+    // Plan of a header line (Év;Hét;Húzásnap;Húzás dátuma;..;1. szám;..);
+    // a column the header does not name keeps its declared index
+    static ColumnPlan fromHeader(List<String> names, ColumnPlan declared) {
+        int year = declared.year;
+        int week = declared.week;
+        int weekday = declared.weekday;
+        int date = declared.date;
+        int numbers = declared.numbers;
+        boolean numbersFound = false;
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).trim().toLowerCase(Locale.ROOT);
+            if (name.startsWith("év")) {
+                year = i;
+            } else if (name.startsWith("hét")) {
+                week = i;
+            } else if (name.contains("nap")) {
+                weekday = i;
+            } else if (name.contains("dátum")) {
+                date = i;
+            } else if (name.contains("szám") && !name.contains("találat") && !numbersFound) {
+                numbers = i;
+                numbersFound = true;
+            }
+        }
+        return new ColumnPlan(year, week, weekday, date, numbers);
+    }
+}
@@ -0,0 +1,229 @@
+package karsaib.lotto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+/*
+ * Conditional download of a CSV export into an on-disk cache file.
+ *
+ * The ETag / Last-Modified of the cached body are kept next to it, and the
+ * next request is conditional (If-None-Match / If-Modified-Since), so an
+ * unchanged export costs one 304 and no parsing. The body is streamed to disk
+ * through a channel (gzip content encoding accepted). A broken transfer
+ * leaves a partial file that the next run continues with a Range request
+ * (If-Range, so a changed export starts over).
+ *
+ * Files: <cache>, <cache>.meta (validators of the cache), <cache>.part and
+ * <cache>.part.meta (the unfinished transfer).
+ */
+final class CsvDownloader {
+
+    private static final int TIMEOUT = 10000;
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "lastModified";
+
+    private CsvDownloader() {
+    }
+
+    static Path pathOf(Game game) {
+        return Path.of(game.id + ".cache");
+    }
+
+    // Result of a fetch: the cached file, whether it changed since the last
+    // committed download, and the body bytes received by this fetch
+    static final class Download {
+
+        final Path file;
+        final boolean modified;
+        final long bytes;
+        private final Properties meta;
+        private final Path metaPath;
+
+        private Download(Path file, boolean modified, long bytes, Properties meta, Path metaPath) {
+            this.file = file;
+            this.modified = modified;
+            this.bytes = bytes;
+            this.meta = meta;
+            this.metaPath = metaPath;
+        }
+
+        // Keep the validators once the content was processed; until then the
+        // next run downloads it again instead of getting a 304
+        void commit() throws IOException {
+            if (modified) {
+                store(meta, metaPath);
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Fetch (conditional, or resumed if a partial transfer is left)
+    // -------------------------------------------------------------------------
+    static Download fetch(String urlString, Path cache) throws IOException {
+        Path metaPath = sibling(cache, ".meta");
+        Path part = sibling(cache, ".part");
+        Path partMetaPath = sibling(cache, ".part.meta");
+
+        Properties meta = Files.exists(cache) ? load(metaPath) : new Properties();
+        Properties partMeta = load(partMetaPath);
+        long resumeFrom = Files.exists(part) && validator(partMeta) != null ? Files.size(part) : 0;
+
+        HttpURLConnection connection = (HttpURLConnection) URI.create(urlString).toURL().openConnection();
+        try {
+            connection.setRequestMethod("GET");
+            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(TIMEOUT);
+            if (resumeFrom > 0) {
+                // Byte ranges of the identity encoding
+                connection.setRequestProperty("Range", "bytes=" + resumeFrom + "-");
+                connection.setRequestProperty("If-Range", validator(partMeta));
+            } else {
+                connection.setRequestProperty("Accept-Encoding", "gzip");
+                if (meta.getProperty(ETAG) != null) {
+                    connection.setRequestProperty("If-None-Match", meta.getProperty(ETAG));
+                }
+                if (meta.getProperty(LAST_MODIFIED) != null) {
+                    connection.setRequestProperty("If-Modified-Since", meta.getProperty(LAST_MODIFIED));
+                }
+            }
+
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && Files.exists(cache)) {
+                System.out.println("Not modified since the last download.");
+                return new Download(cache, false, 0, meta, metaPath);
+            }
+
+            Properties received = new Properties();
+            if (connection.getHeaderField("ETag") != null) {
+                received.setProperty(ETAG, connection.getHeaderField("ETag"));
+            }
+            if (connection.getHeaderField("Last-Modified") != null) {
+                received.setProperty(LAST_MODIFIED, connection.getHeaderField("Last-Modified"));
+            }
+
+            boolean append;
+            if (responseCode == HttpURLConnection.HTTP_PARTIAL && resumeFrom > 0
+                    && rangeStart(connection.getHeaderField("Content-Range")) == resumeFrom) {
+                System.out.println("Resuming download at byte " + resumeFrom);
+                append = true;
+                received = partMeta;
+            } else if (responseCode == HttpURLConnection.HTTP_OK) {
+                append = false;
+            } else if (resumeFrom > 0) {
+                // The partial transfer is not usable (e.g. 416), start over
+                Files.deleteIfExists(part);
+                Files.deleteIfExists(partMetaPath);
+                connection.disconnect();
+                return fetch(urlString, cache);
+            } else {
+                throw new IOException("Failed to download CSV: HTTP " + responseCode);
+            }
+
+            boolean gzip = "gzip".equalsIgnoreCase(connection.getContentEncoding());
+            // A decoded gzip body has no byte offsets of the entity, so it is not resumable
+            if (!append) {
+                Files.deleteIfExists(partMetaPath);
+                if (!gzip && validator(received) != null) {
+                    store(received, partMetaPath);
+                }
+            }
+
+            long length = gzip ? -1 : connection.getContentLengthLong();
+            long bytes;
+            try (InputStream body = connection.getInputStream()) {
+                bytes = transfer(gzip ? new GZIPInputStream(body) : body, part, append, length);
+            } catch (IOException e) {
+                if (gzip) {
+                    Files.deleteIfExists(part);
+                }
+                throw e;
+            }
+
+            Files.move(part, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(partMetaPath);
+            Files.deleteIfExists(metaPath);
+            return new Download(cache, true, bytes, received, metaPath);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // Body to the partial file through its channel; length -1 if unknown.
+    // Returns the bytes written.
+    private static long transfer(InputStream body, Path part, boolean append, long length) throws IOException {
+        try (ReadableByteChannel in = Channels.newChannel(body);
+             FileChannel out = append
+                     ? FileChannel.open(part, StandardOpenOption.WRITE)
+                     : FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long start = out.size();
+            long position = start;
+            long count;
+            while ((count = out.transferFrom(in, position, 1 << 20)) > 0) {
+                position += count;
+            }
+            out.force(false);
+            if (length >= 0 && position - start != length) {
+                throw new IOException("Incomplete download: " + (position - start) + " of " + length + " bytes");
+            }
+            return position - start;
+        }
+    }
+
+    // "bytes 100-199/200" -> 100, -1 if missing or malformed
+    private static long rangeStart(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return -1;
+        }
+        int dash = contentRange.indexOf('-');
+        try {
+            return dash < 0 ? -1 : Long.parseLong(contentRange.substring(6, dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String validator(Properties meta) {
+        return meta.getProperty(ETAG, meta.getProperty(LAST_MODIFIED));
+    }
+
+    // -------------------------------------------------------------------------
+    // Meta files (properties, written atomically)
+    // -------------------------------------------------------------------------
+    private static Path sibling(Path path, String suffix) {
+        return path.resolveSibling(path.getFileName() + suffix);
+    }
+
+    private static Properties load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (NoSuchFileException e) {
+            // No validators yet
+        }
+        return properties;
+    }
+
+    private static void store(Properties properties, Path path) throws IOException {
+        Path temp = sibling(path, ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,293 @@
+package karsaib.lotto;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Byte level parser of the draw history exports.
+ * Works on the raw (UTF-8) bytes of one line and reads the draw numbers into
+ * a reused int[] row buffer; no String is created for the fields, the date and
+ * the "359 455 Ft" prize columns are only scanned over.
+ *
+ * One parser reads one file. The first line fixes the separator and the
+ * column plan: a header line (its first field is not a year) names the
+ * columns, otherwise the game's declared plan is used. After that a line is
+ * a draw only if its columns hold a year, a week and numbersPerRow numbers in
+ * 1..maxNumber at the plan's indexes; any other non-blank line is counted as
+ * malformed, nothing is searched for elsewhere in the line.
+ */
+final class CsvDrawParser {
+
+    // Field classification (any other value is the parsed int)
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final long NOT_INT = Long.MAX_VALUE;
+
+    private final int maxNumber;
+    private final int numbersPerRow;
+    private final ColumnPlan declared;
+
+    // Fixed by the first line
+    private ColumnPlan plan;
+    private byte separator;
+
+    private final int[] row;
+    private ByteBuffer buffer;
+    private int[] fieldStart = new int[32];
+    private int[] fieldEnd = new int[32];
+    private int fieldCount;
+    private int malformed;
+
+    CsvDrawParser(Game game) {
+        this.maxNumber = game.maxNumber;
+        this.numbersPerRow = game.numbersPerRow;
+        this.declared = game.columns;
+        this.row = new int[numbersPerRow];
+    }
+
+    // Numbers of the last accepted line (reused buffer, copy it if kept)
+    int[] row() {
+        return row;
+    }
+
+    // Non-blank lines after the first one that are not a draw of the plan
+    int malformed() {
+        return malformed;
+    }
+
+    // Column plan of the file, null before the first line
+    ColumnPlan plan() {
+        return plan;
+    }
+
+    // Field separator of the file (fixed by the first line)
+    byte separator() {
+        return separator;
+    }
+
+    // -------------------------------------------------------------------------
+    // Parse one line [from, to), returns false if the line is not a draw
+    // -------------------------------------------------------------------------
+    boolean parseLine(ByteBuffer buf, int from, int to) {
+        // trim (and BOM)
+        while (from < to && (isBlank(buf.get(from)) || isBom(buf, from, to))) {
+            from += isBom(buf, from, to) ? 3 : 1;
+        }
+        to = trimEnd(buf, from, to);
+        if (from >= to) return false;
+        buffer = buf;
+
+        if (plan == null) {
+            // Separator: ';' vagy ','
+            separator = ',';
+            for (int i = from; i < to; i++) {
+                if (buf.get(i) == ';') {
+                    separator = ';';
+                    break;
+                }
+            }
+            split(buf, from, to, Integer.MAX_VALUE);
+            if (!isInt(0)) {
+                plan = ColumnPlan.fromHeader(names(buf), declared);
+                return false;
+            }
+            plan = declared;
+        } else {
+            split(buf, from, to, plan.width(numbersPerRow));
+        }
+
+        if (fieldCount < plan.width(numbersPerRow) || !isInt(plan.year()) || !isInt(plan.week())) {
+            malformed++;
+            return false;
+        }
+        for (int i = 0; i < numbersPerRow; i++) {
+            int f = plan.numbers() + i;
+            long v = parseField(buf, fieldStart[f], fieldEnd[f]);
+            if (v == EMPTY || v == NOT_INT || v < 1 || v > maxNumber) {
+                malformed++;
+                return false;
+            }
+            row[i] = (int) v;
+        }
+        return true;
+    }
+
+    // -------------------------------------------------------------------------
+    // Identity of the last parsed line (year;week;[weekday;]date columns)
+    // -------------------------------------------------------------------------
+    DrawKey key() {
+        return new DrawKey(keyField(plan.year()), keyField(plan.week()), date());
+    }
+
+    boolean keyEquals(DrawKey key) {
+        return keyField(plan.year()) == key.year() && keyField(plan.week()) == key.week() && date() == key.date();
+    }
+
+    // Day of week (1 = Monday .. 7 = Sunday) from the weekday column or the date, 0 if unknown
+    int weekday() {
+        if (plan.weekday() != ColumnPlan.NONE && plan.weekday() < fieldCount) {
+            int weekday = parseWeekday(buffer, fieldStart[plan.weekday()], fieldEnd[plan.weekday()]);
+            if (weekday != 0) return weekday;
+        }
+        int date = date();
+        if (date == 0) return 0;
+        try {
+            return LocalDate.of(date / 10000, date / 100 % 100, date % 100).getDayOfWeek().getValue();
+        } catch (DateTimeException e) {
+            return 0;
+        }
+    }
+
+    private int keyField(int f) {
+        if (f == ColumnPlan.NONE || f >= fieldCount) return 0;
+        long v = parseField(buffer, fieldStart[f], fieldEnd[f]);
+        return (v == EMPTY || v == NOT_INT) ? 0 : (int) v;
+    }
+
+    private boolean isInt(int f) {
+        if (f == ColumnPlan.NONE || f >= fieldCount) return false;
+        long v = parseField(buffer, fieldStart[f], fieldEnd[f]);
+        return v != EMPTY && v != NOT_INT;
+    }
+
+    // "yyyy.mm.dd." date column as yyyymmdd, 0 if there is none (old draws)
+    private int date() {
+        int f = plan.date();
+        if (f == ColumnPlan.NONE || f >= fieldCount) return 0;
+        return parseDate(buffer, fieldStart[f], fieldEnd[f]);
+    }
+
+    // Fields of a header line as text
+    private List<String> names(ByteBuffer buf) {
+        List<String> names = new ArrayList<>(fieldCount);
+        for (int f = 0; f < fieldCount; f++) {
+            byte[] bytes = new byte[fieldEnd[f] - fieldStart[f]];
+            buf.get(fieldStart[f], bytes);
+            names.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return names;
+    }
+
+    // Hétfő, Kedd, Szerda, Csütörtök, Péntek, Szombat, Vasárnap
+    private static int parseWeekday(ByteBuffer buf, int from, int to) {
+        while (from < to && isBlank(buf.get(from))) from++;
+        if (to - from < 4) return 0;
+        byte first = buf.get(from);
+        byte third = buf.get(from + 2);
+        switch (first) {
+            case 'H': return 1;
+            case 'K': return 2;
+            case 'C': return 4;
+            case 'P': return 5;
+            case 'V': return 7;
+            case 'S': return third == 'e' ? 3 : third == 'o' ? 6 : 0;
+            default: return 0;
+        }
+    }
+
+    private static int parseDate(ByteBuffer buf, int from, int to) {
+        int date = 0;
+        int part = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buf.get(i);
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                if (++digits > 4) return 0;
+            } else if (b == '.' && digits > 0 && part < 3) {
+                date = date * (part == 0 ? 1 : 100) + value;
+                part++;
+                value = 0;
+                digits = 0;
+            } else if (!isBlank(b)) {
+                return 0;
+            }
+        }
+        if (digits > 0 && part == 2) {
+            date = date * 100 + value;
+            part++;
+        }
+        return part == 3 ? date : 0;
+    }
+
+    // Split into fields, at most limit (the columns after the plan are not needed)
+    private void split(ByteBuffer buf, int from, int to, int limit) {
+        fieldCount = 0;
+        int start = from;
+        for (int i = from; i < to && fieldCount < limit; i++) {
+            if (buf.get(i) == separator) {
+                addField(start, i);
+                start = i + 1;
+            }
+        }
+        if (fieldCount < limit) {
+            addField(start, to);
+        }
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStart.length) {
+            fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+            fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+        }
+        fieldStart[fieldCount] = start;
+        fieldEnd[fieldCount] = end;
+        fieldCount++;
+    }
+
+    // Trimmed field as int (Integer.parseInt rules for ASCII digits)
+    private static long parseField(ByteBuffer buf, int from, int to) {
+        while (from < to && (isBlank(buf.get(from)) || isBom(buf, from, to))) {
+            from += isBom(buf, from, to) ? 3 : 1;
+        }
+        to = trimEnd(buf, from, to);
+        if (from >= to) return EMPTY;
+
+        boolean negative = false;
+        byte first = buf.get(from);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++from == to) return NOT_INT;
+        }
+
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buf.get(i) - '0';
+            if (digit < 0 || digit > 9) return NOT_INT;
+            value = value * 10 + digit;
+            if (value > 1L + Integer.MAX_VALUE) return NOT_INT;
+        }
+        if (negative) return -value;
+        return value > Integer.MAX_VALUE ? NOT_INT : value;
+    }
+
+    private static int trimEnd(ByteBuffer buf, int from, int to) {
+        while (to > from) {
+            if (isBlank(buf.get(to - 1))) {
+                to--;
+            } else if (to - from >= 3 && isBom(buf, to - 3, to)) {
+                to -= 3;
+            } else {
+                break;
+            }
+        }
+        return to;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+
+    // UTF-8 byte order mark (EF BB BF)
+    private static boolean isBom(ByteBuffer buf, int at, int to) {
+        return at + 2 < to
+                && buf.get(at) == (byte) 0xEF
+                && buf.get(at + 1) == (byte) 0xBB
+                && buf.get(at + 2) == (byte) 0xBF;
+    }
+}
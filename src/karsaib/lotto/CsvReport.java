@@ -0,0 +1,52 @@
+package karsaib.lotto;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/*
+ * Number table of the report as CSV (result.csv), in ranking order:
+ * number,occurrences,sinceLast,maxGap,avgGap,score
+ * avgGap (2 decimals) and score (4 decimals) are fixed-point as in the HTML
+ * report, empty for a number without a gap / a score that is not finite.
+ * Windows and combinations are not part of it (see the JSON report).
+ */
+final class CsvReport implements ReportSink {
+
+    @Override
+    public String extension() {
+        return "csv";
+    }
+
+    @Override
+    public String contentType() {
+        return "text/csv; charset=UTF-8";
+    }
+
+    @Override
+    public void write(Report report, Writer writer) throws IOException {
+        NumberStats stats = report.stats();
+        writer.write("number,occurrences,sinceLast,maxGap,avgGap,score\n");
+
+        StringBuilder row = new StringBuilder(64);
+        for (int num : stats.ranking()) {
+            row.setLength(0);
+            row.append(num)
+                    .append(',').append(stats.occurrences(num))
+                    .append(',').append(stats.sinceLast(num))
+                    .append(',').append(stats.maxGap(num))
+                    .append(',');
+            if (stats.hasGap(num)) {
+                fixed(row, stats.avgGap(num), 2);
+            }
+            row.append(',');
+            fixed(row, stats.score(num), 4);
+            writer.append(row.append('\n'));
+        }
+    }
+
+    private static void fixed(StringBuilder row, double value, int decimals) {
+        if (Double.isFinite(value)) {
+            Report.appendFixed(row, value, decimals);
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package karsaib.lotto;
+
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Inverted index of the draw store for ad-hoc queries ("draws of 2010..2015
+ * with both 7 and 13", "Thursdays with 42"): one bitmap of draw indexes
+ * (0 = oldest) per number, per year, per week and per weekday. A query
+ * combines them with AND / OR / NOT, a word (64 draws) at a time.
+ *
+ * A bitmap keeps only the words between its first and last set bit, so a
+ * year or a week range of a few hundred draws is a few words, wherever it is
+ * in the history. A number's draws are spread over the whole history, so its
+ * bitmap stays dense (size / 64 words): on purpose, for the few thousand
+ * draws of an export that is a few hundred bytes per number, and plain word
+ * loops beat run-length or Roaring-style containers at that size. Built once
+ * in a pass over the store.
+ *
+ * Query text (see query): numbers, year=2010 or year=2010..2015, week=1..10,
+ * day=thu (day=4, day=csütörtök), combined by & | ! (or and, or, not) and
+ * parentheses; NOT binds tighter than AND, AND tighter than OR.
+ */
+final class DrawIndex {
+
+    private static final String[] HU_DAYS = {"hétfő", "kedd", "szerda", "csütörtök", "péntek", "szombat",
+            "vasárnap"};
+
+    final int maxNumber;
+    private final int size;
+    private final Bitmap[] numbers;
+    private final int firstYear;
+    private final Bitmap[] years;
+    // Week 1..53, weekday 1 = Monday .. 7 = Sunday
+    private final Bitmap[] weeks;
+    private final Bitmap[] weekdays;
+
+    // -------------------------------------------------------------------------
+    // Set of draw indexes in [0, size), trimmed to the words first .. first + words.length
+    // -------------------------------------------------------------------------
+    static final class Bitmap {
+
+        final int size;
+        private final int first;
+        private final long[] words;
+
+        private Bitmap(int size, int first, long[] words) {
+            this.size = size;
+            this.first = first;
+            this.words = words;
+        }
+
+        // Without the zero words at both ends
+        private static Bitmap trim(int size, int first, long[] words) {
+            int from = 0;
+            int to = words.length;
+            while (from < to && words[from] == 0) {
+                from++;
+            }
+            while (to > from && words[to - 1] == 0) {
+                to--;
+            }
+            if (from == to) {
+                return empty(size);
+            }
+            if (from == 0 && to == words.length) {
+                return new Bitmap(size, first, words);
+            }
+            return new Bitmap(size, first + from, Arrays.copyOfRange(words, from, to));
+        }
+
+        private static Bitmap empty(int size) {
+            return new Bitmap(size, 0, new long[0]);
+        }
+
+        private int end() {
+            return first + words.length;
+        }
+
+        private long word(int w) {
+            return w >= first && w < end() ? words[w - first] : 0;
+        }
+
+        Bitmap and(Bitmap other) {
+            int from = Math.max(first, other.first);
+            int to = Math.min(end(), other.end());
+            if (from >= to) {
+                return empty(size);
+            }
+            long[] result = new long[to - from];
+            for (int w = from; w < to; w++) {
+                result[w - from] = words[w - first] & other.words[w - other.first];
+            }
+            return trim(size, from, result);
+        }
+
+        Bitmap or(Bitmap other) {
+            if (other.words.length == 0) return this;
+            if (words.length == 0) return other;
+            int from = Math.min(first, other.first);
+            int to = Math.max(end(), other.end());
+            long[] result = new long[to - from];
+            for (int w = from; w < to; w++) {
+                result[w - from] = word(w) | other.word(w);
+            }
+            return new Bitmap(size, from, result);
+        }
+
+        Bitmap andNot(Bitmap other) {
+            long[] result = new long[words.length];
+            for (int i = 0; i < words.length; i++) {
+                result[i] = words[i] & ~other.word(first + i);
+            }
+            return trim(size, first, result);
+        }
+
+        // Draws of [0, size) that are not in the set
+        Bitmap not() {
+            long[] result = new long[(size + Long.SIZE - 1) / Long.SIZE];
+            for (int w = 0; w < result.length; w++) {
+                result[w] = ~word(w);
+            }
+            if (size % Long.SIZE != 0) {
+                result[result.length - 1] &= (1L << size) - 1;
+            }
+            return trim(size, 0, result);
+        }
+
+        int cardinality() {
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+
+        // Draw indexes, ascending
+        int[] positions() {
+            int[] positions = new int[cardinality()];
+            int count = 0;
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    positions[count++] = (first + i) * Long.SIZE + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return positions;
+        }
+    }
+
+    private DrawIndex(DrawStore store) {
+        this.maxNumber = store.maxNumber;
+        this.size = store.size();
+        int wordCount = (size + Long.SIZE - 1) / Long.SIZE;
+
+        int minYear = Integer.MAX_VALUE;
+        int maxYear = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            minYear = Math.min(minYear, store.year(i));
+            maxYear = Math.max(maxYear, store.year(i));
+        }
+        this.firstYear = size == 0 ? 0 : minYear;
+        int yearCount = size == 0 ? 0 : maxYear - minYear + 1;
+
+        long[][] numberWords = new long[maxNumber + 1][wordCount];
+        long[][] yearWords = new long[yearCount][wordCount];
+        long[][] weekWords = new long[54][wordCount];
+        long[][] weekdayWords = new long[8][wordCount];
+        int[] row = new int[store.numbersPerRow];
+        for (int i = 0; i < size; i++) {
+            int w = i / Long.SIZE;
+            long bit = 1L << i;
+            int count = store.numbers(i, row);
+            for (int j = 0; j < count; j++) {
+                numberWords[row[j]][w] |= bit;
+            }
+            yearWords[store.year(i) - firstYear][w] |= bit;
+            int week = store.week(i);
+            if (week >= 1 && week <= 53) {
+                weekWords[week][w] |= bit;
+            }
+            int weekday = store.weekday(i);
+            if (weekday >= 1 && weekday <= 7) {
+                weekdayWords[weekday][w] |= bit;
+            }
+        }
+
+        this.numbers = trimAll(numberWords);
+        this.years = trimAll(yearWords);
+        this.weeks = trimAll(weekWords);
+        this.weekdays = trimAll(weekdayWords);
+    }
+
+    static DrawIndex of(DrawStore store) {
+        return new DrawIndex(store);
+    }
+
+    private Bitmap[] trimAll(long[][] full) {
+        Bitmap[] bitmaps = new Bitmap[full.length];
+        for (int i = 0; i < full.length; i++) {
+            bitmaps[i] = Bitmap.trim(size, 0, full[i]);
+        }
+        return bitmaps;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // -------------------------------------------------------------------------
+    // Bitmaps of the index (empty if out of range)
+    // -------------------------------------------------------------------------
+    Bitmap all() {
+        return Bitmap.empty(size).not();
+    }
+
+    Bitmap number(int num) {
+        return num >= 1 && num <= maxNumber ? numbers[num] : Bitmap.empty(size);
+    }
+
+    // Years from..to (inclusive)
+    Bitmap years(int from, int to) {
+        Bitmap result = Bitmap.empty(size);
+        for (int year = Math.max(from, firstYear); year <= Math.min(to, firstYear + years.length - 1); year++) {
+            result = result.or(years[year - firstYear]);
+        }
+        return result;
+    }
+
+    // Weeks from..to (inclusive) of any year
+    Bitmap weeks(int from, int to) {
+        Bitmap result = Bitmap.empty(size);
+        for (int week = Math.max(from, 1); week <= Math.min(to, 53); week++) {
+            result = result.or(weeks[week]);
+        }
+        return result;
+    }
+
+    // 1 = Monday .. 7 = Sunday
+    Bitmap weekday(int day) {
+        return day >= 1 && day <= 7 ? weekdays[day] : Bitmap.empty(size);
+    }
+
+    // -------------------------------------------------------------------------
+    // Query text, null if it is not a valid query
+    // -------------------------------------------------------------------------
+    Bitmap query(String text) {
+        try {
+            Query query = new Query(tokens(text));
+            Bitmap result = query.or();
+            return query.done() ? result : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || "()&|!".indexOf(c) >= 0) {
+                if (token.length() > 0) {
+                    tokens.add(token.toString());
+                    token.setLength(0);
+                }
+                if (!Character.isWhitespace(c)) {
+                    tokens.add(String.valueOf(c));
+                }
+            } else {
+                token.append(c);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    // Recursive descent over the tokens
+    private final class Query {
+
+        private final List<String> tokens;
+        private int next;
+
+        Query(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        boolean done() {
+            return next == tokens.size();
+        }
+
+        private boolean accept(String symbol, String word) {
+            if (next < tokens.size() && (tokens.get(next).equals(symbol)
+                    || tokens.get(next).equalsIgnoreCase(word))) {
+                next++;
+                return true;
+            }
+            return false;
+        }
+
+        Bitmap or() {
+            Bitmap result = and();
+            while (accept("|", "or")) {
+                result = result.or(and());
+            }
+            return result;
+        }
+
+        Bitmap and() {
+            Bitmap result = not();
+            while (accept("&", "and")) {
+                // a & !b without building the complement of b
+                result = accept("!", "not") ? result.andNot(not()) : result.and(not());
+            }
+            return result;
+        }
+
+        Bitmap not() {
+            if (accept("!", "not")) {
+                return not().not();
+            }
+            if (accept("(", "(")) {
+                Bitmap result = or();
+                if (!accept(")", ")")) {
+                    throw new IllegalArgumentException("Missing )");
+                }
+                return result;
+            }
+            if (done()) {
+                throw new IllegalArgumentException("Unexpected end");
+            }
+            return atom(tokens.get(next++).toLowerCase(Locale.ROOT));
+        }
+
+        private Bitmap atom(String token) {
+            if (token.matches("\\d{1,3}")) {
+                int num = Integer.parseInt(token);
+                if (num < 1 || num > maxNumber) {
+                    throw new IllegalArgumentException("Number out of range: " + token);
+                }
+                return numbers[num];
+            }
+            int eq = token.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Unknown term: " + token);
+            }
+            String key = token.substring(0, eq);
+            String value = token.substring(eq + 1);
+            switch (key) {
+                case "year":
+                    return years(lower(value), upper(value));
+                case "week":
+                    return weeks(lower(value), upper(value));
+                case "day":
+                    return weekday(day(value));
+                default:
+                    throw new IllegalArgumentException("Unknown term: " + token);
+            }
+        }
+    }
+
+    // "a" or "a..b"
+    private static int lower(String range) {
+        int dots = range.indexOf("..");
+        return Integer.parseInt(dots < 0 ? range : range.substring(0, dots));
+    }
+
+    private static int upper(String range) {
+        int dots = range.indexOf("..");
+        return Integer.parseInt(dots < 0 ? range : range.substring(dots + 2));
+    }
+
+    // 1..7, an English (mon, thursday) or a Hungarian day name
+    private static int day(String value) {
+        if (value.matches("[1-7]")) {
+            return Integer.parseInt(value);
+        }
+        for (int i = 0; i < 7; i++) {
+            if (value.length() >= 2 && DayOfWeek.of(i + 1).name().toLowerCase(Locale.ROOT).startsWith(value)
+                    || HU_DAYS[i].equals(value)) {
+                return i + 1;
+            }
+        }
+        throw new IllegalArgumentException("Unknown day: " + value);
+    }
+}
@@ -0,0 +1,8 @@
+package karsaib.lotto;
+
+/*
+ * Identity of a draw taken from the leading CSV columns.
+ * date is yyyymmdd, 0 when the export has no date for the draw (old rows).
+ */
+record DrawKey(int year, int week, int date) {
+}
@@ -0,0 +1,365 @@
+package karsaib.lotto;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+ * Compact binary store of the draws of one game, read through a memory-mapped
+ * ByteBuffer. Draws are kept in chronological order (oldest first), so new
+ * draws are appended at the end.
+ *
+ * Header (32 bytes): magic, version, maxNumber, numbersPerRow, numbersPerDraw,
+ * wordsPerRow, draw count, reserved.
+ * Draw record: year (short), week (byte), weekday (byte), date (int, yyyymmdd),
+ * then one bitmask per drawing of the row (bit num-1 is set if num was drawn),
+ * e.g. two longs for a 5/90 draw, one long for 6/45, two longs for Skandi
+ * (machine and manual drawing).
+ *
+ * The writer never maps the file: it writes and reorders through its channel,
+ * and append / newestKey read the header the same way. Windows refuses to
+ * replace or truncate a file while a mapping of it is reachable (a mapping is
+ * only released by the GC), so there a rewrite fails as long as a DrawStore
+ * of the same file is still in use, e.g. the previous store of serve mode.
+ */
+final class DrawStore {
+
+    private static final int MAGIC = 0x4C4F5444; // "LOTD"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int COUNT_OFFSET = 24;
+    private static final int KEY_SIZE = 8;
+
+    final int maxNumber;
+    final int numbersPerRow;
+    final int numbersPerDraw;
+    // Words of one drawing, and of a whole row
+    final int wordsPerDraw;
+    final int wordsPerRow;
+    private final int recordSize;
+    private final int size;
+    private final ByteBuffer buffer;
+
+    private DrawStore(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a draw store");
+        }
+        this.maxNumber = buffer.getInt(8);
+        this.numbersPerRow = buffer.getInt(12);
+        this.numbersPerDraw = buffer.getInt(16);
+        this.wordsPerRow = buffer.getInt(20);
+        this.size = buffer.getInt(COUNT_OFFSET);
+        this.wordsPerDraw = wordsPerDraw(maxNumber);
+        this.recordSize = KEY_SIZE + wordsPerRow * Long.BYTES;
+        if (maxNumber < 1 || numbersPerDraw < 1 || numbersPerRow % numbersPerDraw != 0
+                || wordsPerRow != wordsPerDraw * (numbersPerRow / numbersPerDraw)
+                || (long) HEADER_SIZE + (long) size * recordSize > buffer.limit()) {
+            throw new IOException("Corrupt draw store header");
+        }
+        this.buffer = buffer;
+    }
+
+    static Path pathOf(Game game) {
+        return Path.of(game.id + ".draws");
+    }
+
+    static int wordsPerDraw(int maxNumber) {
+        return (maxNumber + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    // -------------------------------------------------------------------------
+    // Open (single read-only mapping, nothing is decoded)
+    // -------------------------------------------------------------------------
+    static DrawStore open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Draw store too large: " + path);
+            }
+            return new DrawStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    boolean matches(Game game) {
+        return maxNumber == game.maxNumber
+                && numbersPerRow == game.numbersPerRow
+                && numbersPerDraw == game.numbersPerDraw;
+    }
+
+    // -------------------------------------------------------------------------
+    // Draw access, index 0 is the oldest draw
+    // -------------------------------------------------------------------------
+    int size() {
+        return size;
+    }
+
+    private int offset(int index) {
+        return HEADER_SIZE + index * recordSize;
+    }
+
+    int year(int index) {
+        return buffer.getShort(offset(index));
+    }
+
+    int week(int index) {
+        return buffer.get(offset(index) + 2);
+    }
+
+    // 1 = Monday .. 7 = Sunday, 0 if unknown
+    int weekday(int index) {
+        return buffer.get(offset(index) + 3);
+    }
+
+    int date(int index) {
+        return buffer.getInt(offset(index) + 4);
+    }
+
+    DrawKey key(int index) {
+        return new DrawKey(year(index), week(index), date(index));
+    }
+
+    // Bitmask word of the draw (drawing * wordsPerDraw + word)
+    long word(int index, int word) {
+        return buffer.getLong(offset(index) + KEY_SIZE + word * Long.BYTES);
+    }
+
+    boolean contains(int index, int drawing, int num) {
+        long word = word(index, drawing * wordsPerDraw + (num - 1) / Long.SIZE);
+        return (word & (1L << (num - 1))) != 0;
+    }
+
+    // Numbers of the draw into out (ascending per drawing), returns the count
+    int numbers(int index, int[] out) {
+        int count = 0;
+        int base = offset(index) + KEY_SIZE;
+        for (int w = 0; w < wordsPerRow; w++) {
+            long word = buffer.getLong(base + w * Long.BYTES);
+            int first = (w % wordsPerDraw) * Long.SIZE + 1;
+            while (word != 0) {
+                out[count++] = first + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return count;
+    }
+
+    // Numbers of every draw, oldest first
+    int[][] rows() {
+        int[][] rows = new int[size][];
+        int[] row = new int[numbersPerRow];
+        for (int i = 0; i < size; i++) {
+            int count = numbers(i, row);
+            rows[i] = Arrays.copyOf(row, count);
+        }
+        return rows;
+    }
+
+    // -------------------------------------------------------------------------
+    // Statistics straight from the store (newest draw first)
+    // -------------------------------------------------------------------------
+    StatsAccumulator stats() {
+        StatsAccumulator stats = new StatsAccumulator(maxNumber);
+        int[] row = new int[numbersPerRow];
+        for (int i = size - 1; i >= 0; i--) {
+            int count = numbers(i, row);
+            // A repeated number of a bad row is stored only once
+            stats.accept(count == numbersPerRow ? row : Arrays.copyOf(row, count));
+        }
+        return stats;
+    }
+
+    // -------------------------------------------------------------------------
+    // Writer: create (into a temp file, moved in place on commit) or append
+    // -------------------------------------------------------------------------
+    static Writer create(Path path, Game game, boolean newestFirst) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ, StandardOpenOption.TRUNCATE_EXISTING);
+        Writer writer = new Writer(channel, game, 0, newestFirst, temp, path);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION)
+                .putInt(game.maxNumber).putInt(game.numbersPerRow).putInt(game.numbersPerDraw)
+                .putInt(writer.wordsPerRow).putInt(0).putInt(0);
+        header.flip();
+        channel.write(header, 0);
+        return writer;
+    }
+
+    // New draws have to be given oldest first
+    static Writer append(Path path, Game game) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        try {
+            return new Writer(channel, game, count(channel, path, game), false, null, null);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Draw count and newest draw of a store of the game, null if it has no draws
+    static DrawKey newestKey(Path path, Game game, int[] count) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            count[0] = count(channel, path, game);
+            if (count[0] == 0) {
+                return null;
+            }
+            ByteBuffer key = read(channel, HEADER_SIZE + (long) (count[0] - 1) * recordSize(game), KEY_SIZE);
+            return new DrawKey(key.getShort(0), key.get(2), key.getInt(4));
+        }
+    }
+
+    // Draw count from the header (read through the channel, no mapping)
+    private static int count(FileChannel channel, Path path, Game game) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            throw new IOException("Not a draw store");
+        }
+        ByteBuffer header = read(channel, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Not a draw store");
+        }
+        if (header.getInt(8) != game.maxNumber || header.getInt(12) != game.numbersPerRow
+                || header.getInt(16) != game.numbersPerDraw) {
+            throw new IOException("Draw store of another game: " + path);
+        }
+        int count = header.getInt(COUNT_OFFSET);
+        if (header.getInt(20) * Long.BYTES + KEY_SIZE != recordSize(game)
+                || count < 0 || HEADER_SIZE + (long) count * recordSize(game) > channel.size()) {
+            throw new IOException("Corrupt draw store header");
+        }
+        return count;
+    }
+
+    private static int recordSize(Game game) {
+        return KEY_SIZE + wordsPerDraw(game.maxNumber) * (game.numbersPerRow / game.numbersPerDraw) * Long.BYTES;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Draw store truncated");
+            }
+        }
+        return buffer.flip();
+    }
+
+    static final class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final int numbersPerDraw;
+        private final int wordsPerDraw;
+        private final int wordsPerRow;
+        private final int recordSize;
+        private final boolean reverse;
+        private final Path temp;
+        private final Path target;
+        private final long[] words;
+        private final ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+        private int count;
+        private int firstNew;
+        private boolean committed;
+
+        private Writer(FileChannel channel, Game game, int count, boolean reverse, Path temp, Path target)
+                throws IOException {
+            this.channel = channel;
+            this.numbersPerDraw = game.numbersPerDraw;
+            this.wordsPerDraw = DrawStore.wordsPerDraw(game.maxNumber);
+            this.wordsPerRow = wordsPerDraw * (game.numbersPerRow / game.numbersPerDraw);
+            this.recordSize = KEY_SIZE + wordsPerRow * Long.BYTES;
+            this.reverse = reverse;
+            this.temp = temp;
+            this.target = target;
+            this.words = new long[wordsPerRow];
+            this.count = count;
+            this.firstNew = count;
+            channel.position(HEADER_SIZE + (long) count * recordSize);
+        }
+
+        void add(int[] row, int year, int week, int weekday, int date) throws IOException {
+            Arrays.fill(words, 0L);
+            for (int i = 0; i < row.length; i++) {
+                int num = row[i] - 1;
+                int drawing = i / numbersPerDraw;
+                words[drawing * wordsPerDraw + num / Long.SIZE] |= 1L << num;
+            }
+            if (out.remaining() < recordSize) {
+                flush();
+            }
+            out.putShort((short) year).put((byte) week).put((byte) weekday).putInt(date);
+            for (long word : words) {
+                out.putLong(word);
+            }
+            count++;
+        }
+
+        private void flush() throws IOException {
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            out.clear();
+        }
+
+        // Completes the store: the count is written and a created store is
+        // moved in place. Without a commit close() drops the new draws.
+        void commit() throws IOException {
+            try {
+                flush();
+                if (reverse) {
+                    reverseRecords();
+                }
+                ByteBuffer countBuffer = ByteBuffer.allocate(Integer.BYTES).putInt(count);
+                countBuffer.flip();
+                channel.write(countBuffer, COUNT_OFFSET);
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+            if (temp != null) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (committed) return;
+            try {
+                if (temp == null && channel.isOpen()) {
+                    // Appended records past the old count are cut off
+                    channel.truncate(HEADER_SIZE + (long) firstNew * recordSize);
+                }
+            } finally {
+                channel.close();
+                if (temp != null) {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        }
+
+        // Records were written newest first, turn them into chronological order
+        // (on the heap, a mapping would block the move on Windows)
+        private void reverseRecords() throws IOException {
+            long start = HEADER_SIZE + (long) firstNew * recordSize;
+            long length = (long) (count - firstNew) * recordSize;
+            if (length == 0) return;
+            ByteBuffer records = read(channel, start, (int) length);
+            byte[] a = new byte[recordSize];
+            byte[] b = new byte[recordSize];
+            for (int i = 0, j = count - firstNew - 1; i < j; i++, j--) {
+                records.get(i * recordSize, a);
+                records.get(j * recordSize, b);
+                records.put(i * recordSize, b);
+                records.put(j * recordSize, a);
+            }
+            while (records.hasRemaining()) {
+                channel.write(records, start + records.position());
+            }
+        }
+    }
+}
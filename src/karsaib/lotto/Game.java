@@ -0,0 +1,66 @@
+package karsaib.lotto;
+
+import java.time.DayOfWeek;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * Supported lottery games with their source and number range.
+ */
+enum Game {
+
+    // 5/90
+    // year;week;date;4 x (winners;prize);5 numbers
+    OTOS("5", "otos", "https://bet.szerencsejatek.hu/cmsfiles/otos.csv", 90, 5, 5,
+            EnumSet.of(DayOfWeek.SATURDAY), new ColumnPlan(0, 1, ColumnPlan.NONE, 2, 11),
+            List.of("5", "4", "3", "2")),
+    // 6 lottery 1..45, 6 szám soronként
+    // year;week;weekday;date;5 x (winners;prize);6 numbers[;bonus number]
+    HATOS("6", "hatos", "https://bet.szerencsejatek.hu/cmsfiles/hatos.csv", 45, 6, 6,
+            EnumSet.of(DayOfWeek.THURSDAY, DayOfWeek.SUNDAY), new ColumnPlan(0, 1, 2, 3, 14),
+            List.of("6", "5+1", "5", "4", "3")),
+    // 7 (Skandi) mode: 1..35, 14 szám numbers in row (gépi + kézi húzás, 7-7)
+    // year;week;date;4 x (winners;prize);7 + 7 numbers
+    SKANDI("7", "skandi", "https://bet.szerencsejatek.hu/cmsfiles/skandi.csv", 35, 14, 7,
+            EnumSet.of(DayOfWeek.WEDNESDAY), new ColumnPlan(0, 1, ColumnPlan.NONE, 2, 11),
+            List.of("7", "6", "5", "4"));
+
+    // Command line mode
+    final String mode;
+    // Short name, used for the generated file names
+    final String id;
+    final String url;
+    final int maxNumber;
+    final int numbersPerRow;
+    // Numbers of one drawing; a row can hold several drawings (Skandi)
+    final int numbersPerDraw;
+    // Days of the week with a draw (server mode refreshes after them)
+    final Set<DayOfWeek> drawDays;
+    // Declared column layout of the export
+    final ColumnPlan columns;
+    // Prize tiers of the (winners;prize) column pairs, top tier first
+    final List<String> tiers;
+
+    Game(String mode, String id, String url, int maxNumber, int numbersPerRow, int numbersPerDraw,
+         Set<DayOfWeek> drawDays, ColumnPlan columns, List<String> tiers) {
+        this.mode = mode;
+        this.id = id;
+        this.url = url;
+        this.maxNumber = maxNumber;
+        this.numbersPerRow = numbersPerRow;
+        this.numbersPerDraw = numbersPerDraw;
+        this.drawDays = drawDays;
+        this.columns = columns;
+        this.tiers = tiers;
+    }
+
+    static Game ofMode(String mode) {
+        for (Game game : values()) {
+            if (game.mode.equals(mode)) {
+                return game;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,309 @@
+package karsaib.lotto;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * HTML report (result.html): the number table with colour buckets, then the
+ * windows, the year-over-year, month and weekday tables and the pair / triple
+ * tables if the report has them.
+ */
+final class HtmlReport implements ReportSink {
+
+    private static final String[] SINCE = {"since1", "since2", "since3", "since4"};
+    private static final String[] GAP = {"gap1", "gap2", "gap3", "gap4"};
+    private static final String[] OCC = {"occ1", "occ2", "occ3", "occ4"};
+
+    @Override
+    public String extension() {
+        return "html";
+    }
+
+    @Override
+    public String contentType() {
+        return "text/html; charset=UTF-8";
+    }
+
+    @Override
+    public void write(Report report, Writer writer) throws IOException {
+        NumberStats stats = report.stats();
+        int totalRows = stats.totalRows;
+        int[] lastDraw = stats.lastDraw();
+        int[] ranking = stats.ranking();
+
+        writer.write("<html><head>");
+        writer.write("<meta charset=\"UTF-8\">");
+        writer.write("<title>Lottó statistics</title>");
+
+        writer.write("<style>");
+        writer.write("body { font-family: Arial, sans-serif; }");
+        writer.write("table { border-collapse: collapse; margin-top: 16px; }");
+        writer.write("th, td { border: 1px solid #ccc; padding: 4px 8px; text-align: right; }");
+        writer.write("th { background-color: #f0f0f0; }");
+        writer.write("td:first-child, th:first-child { text-align: center; }");
+
+        // Kék skála – sinceLast
+        writer.write(".since1 { background-color: #e3f2fd; }");
+        writer.write(".since2 { background-color: #bbdefb; }");
+        writer.write(".since3 { background-color: #90caf9; }");
+        writer.write(".since4 { background-color: #42a5f5; }");
+
+        // Kék skála – maxGap
+        writer.write(".gap1 { background-color: #e3f2fd; }");
+        writer.write(".gap2 { background-color: #bbdefb; }");
+        writer.write(".gap3 { background-color: #90caf9; }");
+        writer.write(".gap4 { background-color: #42a5f5; }");
+
+        // Kék skála – Darab (fordított: kevés darab = sötét)
+        writer.write(".occ1 { background-color: #e3f2fd; }"); // legtöbb -> világos
+        writer.write(".occ2 { background-color: #bbdefb; }");
+        writer.write(".occ3 { background-color: #90caf9; }");
+        writer.write(".occ4 { background-color: #42a5f5; }"); // legkevesebb -> sötét
+
+        writer.write("</style>");
+        writer.write("</head><body>");
+
+        writer.write("<h1>Lottó statistics</h1>");
+        writer.write("<p>Total draws: " + totalRows + "</p>");
+
+        if (lastDraw != null && lastDraw.length >= 5) {
+            writer.write("<h2>Last draw:</h2><p>");
+            for (int i = 0; i < Math.min(6, lastDraw.length); i++) {
+                writer.write(lastDraw[i] + " ");
+            }
+            writer.write("</p>");
+        }
+
+        // sinceLast, maxGap and occurrences ranges, in one pass
+        Scale since = new Scale();
+        Scale gap = new Scale();
+        Scale occ = new Scale();
+        for (int num : ranking) {
+            since.add(stats.sinceLast(num));
+            occ.add(stats.occurrences(num));
+            // Numbers drawn only once have no max gap
+            if (stats.maxGap(num) > 0) {
+                gap.add(stats.maxGap(num));
+            }
+        }
+        since.thresholds();
+        gap.thresholds();
+        occ.thresholds();
+
+        writer.write("<h2>Szám-statisztika</h2>");
+        writer.write("<table>");
+        writer.write("<thead><tr>"
+                + "<th>Szám</th>"
+                + "<th>Darab</th>"
+                + "<th>Húzások az utolsó óta</th>"
+                + "<th>Max kihagyás</th>"
+                + "<th>Átlag kihagyás</th>"
+                + "<th>Súlyozott pontszám</th>"
+                + "</tr></thead>");
+        writer.write("<tbody>");
+
+        StringBuilder row = new StringBuilder(160);
+        for (int num : ranking) {
+            int occurrences = stats.occurrences(num);
+            int sinceLast = stats.sinceLast(num);
+            int maxGap = stats.maxGap(num);
+
+            // No range: darkest since / gap bucket, middle occurrence bucket
+            int sinceBucket = since.bucket(sinceLast);
+            int gapBucket = gap.bucket(maxGap);
+            int occBucket = occ.bucket(occurrences);
+            String sinceClass = SINCE[sinceBucket < 0 ? 3 : sinceBucket];
+            String gapClass = GAP[gapBucket < 0 ? 3 : gapBucket];
+            // Reversed: few occurrences = dark
+            String occClass = OCC[occBucket < 0 ? 2 : 3 - occBucket];
+
+            row.setLength(0);
+            row.append("<tr><td>").append(num)
+                    .append("</td><td class='").append(occClass).append("'>").append(occurrences)
+                    .append("</td><td class='").append(sinceClass).append("'>").append(sinceLast)
+                    .append("</td><td class='").append(gapClass).append("'>").append(maxGap)
+                    .append("</td><td>");
+            Report.appendFixed(row, stats.avgGap(num), 2).append("</td><td>");
+            Report.appendFixed(row, stats.score(num), 4).append("</td></tr>");
+            writer.append(row);
+        }
+
+        writer.write("</tbody></table>");
+
+        if (!report.windows().isEmpty()) {
+            writeWindows(writer, stats, report.windows());
+        }
+        if (!report.years().isEmpty()) {
+            writePartitions(writer, "Évek összehasonlítása", stats.maxNumber, report.years(), true);
+        }
+        if (!report.months().isEmpty()) {
+            writePartitions(writer, "Hónapok összehasonlítása", stats.maxNumber, report.months(), true);
+        }
+        if (!report.weekdays().isEmpty()) {
+            writePartitions(writer, "Napok szerint", stats.maxNumber, report.weekdays(), false);
+        }
+
+        CoOccurrence pairs = report.pairs();
+        if (pairs != null) {
+            writeCombinations(writer, "Gyakori párok", "Pár", pairs.topPairs(Report.TOP_COMBINATIONS), pairs);
+            if (pairs.hasTriples()) {
+                writeCombinations(writer, "Gyakori hármasok", "Hármas",
+                        pairs.topTriples(Report.TOP_COMBINATIONS), pairs);
+            }
+        }
+
+        writer.write("</body></html>");
+    }
+
+    // -------------------------------------------------------------------------
+    // Four colour buckets over the [min, max] range of a column
+    // -------------------------------------------------------------------------
+    private static final class Scale {
+
+        private boolean any;
+        private int min;
+        private int max;
+        private double t1;
+        private double t2;
+        private double t3;
+
+        void add(int value) {
+            if (!any) {
+                min = max = value;
+                any = true;
+            }
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        void thresholds() {
+            double step = (max - min) / 4.0;
+            t1 = min + step;
+            t2 = min + 2 * step;
+            t3 = min + 3 * step;
+        }
+
+        // 0..3, -1 if the column has no range
+        int bucket(int value) {
+            if (max - min <= 0) return -1;
+            if (value <= t1) return 0;
+            if (value <= t2) return 1;
+            if (value <= t3) return 2;
+            return 3;
+        }
+    }
+
+    // Windows side by side (the whole history first), numbers in order
+    private static void writeWindows(Writer writer, NumberStats stats, List<Report.Window> windows)
+            throws IOException {
+        List<Report.Window> columns = new ArrayList<>();
+        columns.add(new Report.Window("Teljes", stats));
+        columns.addAll(windows);
+
+        writer.write("<h2>Időablakok</h2>");
+        writer.write("<table>");
+        writer.write("<thead><tr><th rowspan='2'>Szám</th>");
+        for (Report.Window window : columns) {
+            writer.write("<th colspan='3'>" + window.label() + " (" + window.stats().totalRows + ")</th>");
+        }
+        writer.write("</tr><tr>");
+        for (int i = 0; i < columns.size(); i++) {
+            writer.write("<th>Darab</th><th>Húzások az utolsó óta</th><th>Súlyozott pontszám</th>");
+        }
+        writer.write("</tr></thead>");
+        writer.write("<tbody>");
+        StringBuilder row = new StringBuilder(256);
+        for (int num = 1; num <= stats.maxNumber; num++) {
+            row.setLength(0);
+            row.append("<tr><td>").append(num).append("</td>");
+            for (Report.Window window : columns) {
+                NumberStats w = window.stats();
+                if (w.drawn(num)) {
+                    row.append("<td>").append(w.occurrences(num))
+                            .append("</td><td>").append(w.sinceLast(num)).append("</td><td>");
+                    Report.appendFixed(row, w.score(num), 4).append("</td>");
+                } else {
+                    row.append("<td>0</td><td>-</td><td>-</td>");
+                }
+            }
+            row.append("</tr>");
+            writer.append(row);
+        }
+        writer.write("</tbody></table>");
+    }
+
+    // Occurrences per partition (year, month, weekday) and, with change, the
+    // change from the partition before (oldest first)
+    private static void writePartitions(Writer writer, String title, int maxNumber,
+                                        List<Report.Window> partitions, boolean change) throws IOException {
+        writer.write("<h2>" + title + "</h2>");
+        writer.write("<table>");
+        writer.write("<thead><tr><th rowspan='2'>Szám</th>");
+        for (Report.Window partition : partitions) {
+            writer.write("<th colspan='" + (change ? 3 : 2) + "'>" + partition.label()
+                    + " (" + partition.stats().totalRows + ")</th>");
+        }
+        writer.write("</tr><tr>");
+        for (int i = 0; i < partitions.size(); i++) {
+            writer.write(change ? "<th>Darab</th><th>Változás</th><th>Súlyozott pontszám</th>"
+                    : "<th>Darab</th><th>Súlyozott pontszám</th>");
+        }
+        writer.write("</tr></thead>");
+        writer.write("<tbody>");
+        StringBuilder row = new StringBuilder(256);
+        for (int num = 1; num <= maxNumber; num++) {
+            row.setLength(0);
+            row.append("<tr><td>").append(num).append("</td>");
+            for (int i = 0; i < partitions.size(); i++) {
+                NumberStats p = partitions.get(i).stats();
+                row.append("<td>").append(p.occurrences(num)).append("</td><td>");
+                if (change) {
+                    if (i == 0) {
+                        row.append('-');
+                    } else {
+                        int diff = p.occurrences(num) - partitions.get(i - 1).stats().occurrences(num);
+                        row.append(diff > 0 ? "+" : "").append(diff);
+                    }
+                    row.append("</td><td>");
+                }
+                if (p.drawn(num)) {
+                    Report.appendFixed(row, p.score(num), 4);
+                } else {
+                    row.append('-');
+                }
+                row.append("</td>");
+            }
+            row.append("</tr>");
+            writer.append(row);
+        }
+        writer.write("</tbody></table>");
+    }
+
+    // Top-N pairs or triples (drawn together)
+    private static void writeCombinations(Writer writer, String title, String label,
+                                          int[][] combinations, CoOccurrence pairs) throws IOException {
+        writer.write("<h2>" + title + "</h2>");
+        writer.write("<table>");
+        writer.write("<thead><tr>"
+                + "<th>" + label + "</th>"
+                + "<th>Darab</th>"
+                + "<th>Húzások az utolsó óta</th>"
+                + "</tr></thead>");
+        writer.write("<tbody>");
+        for (int[] c : combinations) {
+            int count = c.length == 2 ? pairs.pairCount(c[0], c[1]) : pairs.tripleCount(c[0], c[1], c[2]);
+            int since = c.length == 2 ? pairs.pairSince(c[0], c[1]) : pairs.tripleSince(c[0], c[1], c[2]);
+
+            StringBuilder numbers = new StringBuilder();
+            for (int num : c) {
+                if (numbers.length() > 0) numbers.append(" - ");
+                numbers.append(num);
+            }
+            writer.write("<tr><td>" + numbers + "</td><td>" + count + "</td><td>"
+                    + (since < 0 ? "-" : String.valueOf(since)) + "</td></tr>");
+        }
+        writer.write("</tbody></table>");
+    }
+}
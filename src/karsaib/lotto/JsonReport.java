@@ -0,0 +1,166 @@
+package karsaib.lotto;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/*
+ * Machine-readable report (result.json), same content as the HTML one:
+ *
+ * {"game": "hatos", "totalRows": 1818, "lastDraw": [...],
+ *  "numbers": [{"number", "occurrences", "sinceLast", "maxGap", "avgGap", "score"}, ...],
+ *  "windows": [{"label", "draws", "numbers": [...]}, ...],
+ *  "years": [{"label", "draws", "numbers": [...]}, ...], "months": [...], "weekdays": [...],
+ *  "pairs": [{"numbers": [a, b], "count", "sinceLast"}, ...], "triples": [...]}
+ *
+ * numbers are in ranking order; avgGap is null for a number without a gap,
+ * sinceLast of a combination is null if it was never drawn.
+ */
+final class JsonReport implements ReportSink {
+
+    @Override
+    public String extension() {
+        return "json";
+    }
+
+    @Override
+    public String contentType() {
+        return "application/json; charset=UTF-8";
+    }
+
+    @Override
+    public void write(Report report, Writer writer) throws IOException {
+        NumberStats stats = report.stats();
+        StringBuilder out = new StringBuilder(256);
+
+        out.append("{\"game\":");
+        string(out, report.game().id);
+        out.append(",\"totalRows\":").append(stats.totalRows);
+        out.append(",\"lastDraw\":[");
+        int[] lastDraw = stats.lastDraw();
+        for (int i = 0; i < lastDraw.length; i++) {
+            if (i > 0) out.append(',');
+            out.append(lastDraw[i]);
+        }
+        out.append("],\"numbers\":");
+        writer.append(out);
+        writeNumbers(writer, stats);
+
+        writer.write(",\"windows\":");
+        writeWindows(writer, report.windows());
+        writer.write(",\"years\":");
+        writeWindows(writer, report.years());
+        writer.write(",\"months\":");
+        writeWindows(writer, report.months());
+        writer.write(",\"weekdays\":");
+        writeWindows(writer, report.weekdays());
+
+        CoOccurrence pairs = report.pairs();
+        if (pairs != null) {
+            writer.write(",\"pairs\":");
+            writeCombinations(writer, pairs.topPairs(Report.TOP_COMBINATIONS), pairs);
+            if (pairs.hasTriples()) {
+                writer.write(",\"triples\":");
+                writeCombinations(writer, pairs.topTriples(Report.TOP_COMBINATIONS), pairs);
+            }
+        }
+        writer.write("}\n");
+    }
+
+    private static void writeNumbers(Writer writer, NumberStats stats) throws IOException {
+        StringBuilder out = new StringBuilder(128);
+        writer.write("[");
+        boolean first = true;
+        for (int num : stats.ranking()) {
+            out.setLength(0);
+            if (!first) out.append(',');
+            first = false;
+            out.append("{\"number\":").append(num)
+                    .append(",\"occurrences\":").append(stats.occurrences(num))
+                    .append(",\"sinceLast\":").append(stats.sinceLast(num))
+                    .append(",\"maxGap\":").append(stats.maxGap(num))
+                    .append(",\"avgGap\":");
+            if (stats.hasGap(num)) {
+                number(out, stats.avgGap(num));
+            } else {
+                out.append("null");
+            }
+            out.append(",\"score\":");
+            number(out, stats.score(num));
+            out.append('}');
+            writer.append(out);
+        }
+        writer.write("]");
+    }
+
+    private static void writeWindows(Writer writer, List<Report.Window> windows) throws IOException {
+        StringBuilder out = new StringBuilder(64);
+        writer.write("[");
+        boolean first = true;
+        for (Report.Window window : windows) {
+            out.setLength(0);
+            if (!first) out.append(',');
+            first = false;
+            out.append("{\"label\":");
+            string(out, window.label());
+            out.append(",\"draws\":").append(window.stats().totalRows).append(",\"numbers\":");
+            writer.append(out);
+            writeNumbers(writer, window.stats());
+            writer.write("}");
+        }
+        writer.write("]");
+    }
+
+    private static void writeCombinations(Writer writer, int[][] combinations, CoOccurrence pairs)
+            throws IOException {
+        StringBuilder out = new StringBuilder(64);
+        writer.write("[");
+        for (int i = 0; i < combinations.length; i++) {
+            int[] c = combinations[i];
+            int count = c.length == 2 ? pairs.pairCount(c[0], c[1]) : pairs.tripleCount(c[0], c[1], c[2]);
+            int since = c.length == 2 ? pairs.pairSince(c[0], c[1]) : pairs.tripleSince(c[0], c[1], c[2]);
+
+            out.setLength(0);
+            if (i > 0) out.append(',');
+            out.append("{\"numbers\":[");
+            for (int j = 0; j < c.length; j++) {
+                if (j > 0) out.append(',');
+                out.append(c[j]);
+            }
+            out.append("],\"count\":").append(count).append(",\"sinceLast\":");
+            if (since < 0) {
+                out.append("null");
+            } else {
+                out.append(since);
+            }
+            out.append('}');
+            writer.append(out);
+        }
+        writer.write("]");
+    }
+
+    // Full precision; NaN and infinity are not JSON numbers
+    private static void number(StringBuilder out, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.append("null");
+        } else {
+            out.append(value);
+        }
+    }
+
+    private static void string(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append("\\u00");
+                out.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
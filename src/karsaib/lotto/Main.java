@@ -1,10 +1,19 @@
 package karsaib.lotto;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /*
  * Lotto statistical generator
@@ -12,594 +21,913 @@ import java.util.*;
  */
 public class Main {
 
-    // Source URL of history data
-    private static final String URL_OTOS = "https://bet.szerencsejatek.hu/cmsfiles/otos.csv";
-    private static final String URL_HATOS = "https://bet.szerencsejatek.hu/cmsfiles/hatos.csv";
-    private static final String URL_SKANDI = "https://bet.szerencsejatek.hu/cmsfiles/skandi.csv";
+    // Draws per row of the backtest curve
+    private static final int BACKTEST_BLOCK = 100;
+    // Weight search: default grid resolution, random candidates and seed
+    private static final int OPTIMIZE_GRID = 20;
+    private static final int OPTIMIZE_RANDOM = 5000;
+    private static final long OPTIMIZE_SEED = 1L;
+    // Report file name without the extension of the format
+    private static final String REPORT = "result";
+    // Hits per ticket of --tickets
+    private static final String TICKET_REPORT = "hits.csv";
+    // Report of --prizes
+    private static final String PRIZE_REPORT = "prizes.html";
+    // Tickets listed by --generate by default
+    private static final int GENERATE_TOP = 10;
+    // Seed of --simulate by default
+    private static final long SIMULATE_SEED = 1L;
+    // Simulated histories of --randomness by default, and their seed
+    private static final int RANDOMNESS_RUNS = 100_000;
+    private static final long RANDOMNESS_SEED = 1L;
+
+    // What goes into the report and in which formats
+    private record ReportOptions(boolean triples, String windows, List<ReportSink> sinks) {
+    }
+
+    // Draws of an export above a known draw, newest first; found is false if
+    // the export does not have that draw
+    private record NewDraws(List<int[]> rows, List<DrawKey> keys, List<Integer> weekdays, boolean found) {
+    }
 
     public static void main(String[] args) {
         if (args.length < 1) {
-            System.out.println("Use: java -jar lotto-1.jar [5|6|7]");
+            System.out.println("Use: java -jar lotto-1.jar [5|6|7|all|serve] [--file <path> | --from-store | --backtest [K] | --optimize [grid|random] [N]]");
             System.out.println("  - 5: 5/90 lottery (from URL)");
             System.out.println("  - 6: 6/45 lottery (from URL)");
             System.out.println("  - 7: Skandi lottery (from URL)");
+            System.out.println("  - all: every game at once, one report per game (result-<game>.html)");
+            System.out.println("  - serve: HTTP server of every game's report (/hatos, /hatos.json, ..), refreshed after");
+            System.out.println("    the draw days; --port N sets the port (default " + StatsServer.DEFAULT_PORT + ")");
+            System.out.println("  --file <path>: read a local CSV export instead of the URL (single pass, memory does");
+            System.out.println("    not grow with the draws)");
+            System.out.println("  --watch <dir>: keep running and rewrite the report of a CSV export (file name with the");
+            System.out.println("    game id, e.g. hatos.csv -> result-hatos.*) whenever it changes in the directory;");
+            System.out.println("    only the new draws are parsed. With 5, 6 or 7 only that game is watched. The report");
+            System.out.println("    has the number table only, like --file");
+            System.out.println("  --simulate N [seed]: write N random draws in the CSV layout of the game (sim-<game>.csv)");
+            System.out.println("  --from-store: report from the binary draw store of the last run");
+            System.out.println("  --backtest [K]: walk-forward backtest of the top K scored numbers (backtest.html)");
+            System.out.println("  --generate [K]: the K best tickets by the sum of the number scores (default "
+                    + GENERATE_TOP + ")");
+            System.out.println("    --pairs W: add W * (pair count / highest pair count) for every pair of a ticket");
+            System.out.println("    --sum a..b, --odd a..b: only tickets with the number sum / odd numbers in the range");
+            System.out.println("  --query <expr>: draws of the draw store matching the expression, e.g.");
+            System.out.println("    \"year=2010..2015 & 7 & 13\", \"42 & day=thu\", \"(1 | 2) & !year=2020\"; terms: numbers,");
+            System.out.println("    year=a[..b], week=a[..b], day=<1..7 or name>; operators & | ! (and, or, not), ( )");
+            System.out.println("  --randomness [N]: chi-square tests of the occurrences, the gaps and the pairs of the");
+            System.out.println("    draw store with p-values from N simulated histories (default " + RANDOMNESS_RUNS
+                    + "); all games with all");
+            System.out.println("  --prizes: jackpot rollovers and payouts per tier by year (" + PRIZE_REPORT + "), from the");
+            System.out.println("    last downloaded export or --file");
+            System.out.println("  --tickets <path>: hits of every ticket (one per line) in the draw history ("
+                    + TICKET_REPORT + ")");
+            System.out.println("  --optimize [grid|random] [N]: search the score weights with the most top K hits");
+            System.out.println("    (grid of resolution N, default " + OPTIMIZE_GRID + ", or N random weights, default "
+                    + OPTIMIZE_RANDOM + "); --top K sets K");
+            System.out.println("  --windows <w,w,..>: compare windows in the report, w is a number of last draws (200)");
+            System.out.println("    or a date range (2020..2023, 2020.03..2021.06.30)");
+            System.out.println("  --format <f,f,..>: report formats, html (default), json, csv");
+            System.out.println("  --triples: add the most frequent triples to the report (pairs are always listed)");
+            System.out.println("  --metrics: print the timings and counters of the phases as JSON at the end");
             return;
         }
 
         String mode = args[0];
+        String file = null;
+        String watch = null;
+        String tickets = null;
+        String query = null;
+        int generate = 0;
+        int simulate = 0;
+        int randomness = 0;
+        long seed = SIMULATE_SEED;
+        double pairWeight = 0;
+        int[] sumRange = null;
+        int[] oddRange = null;
+        boolean fromStore = false;
+        boolean prizes = false;
+        boolean triples = false;
+        boolean metrics = false;
+        String windows = null;
+        List<ReportSink> sinks = new ArrayList<>();
+        int backtestK = 0;
+        String optimize = null;
+        int optimizeN = 0;
+        int topK = 0;
+        int port = StatsServer.DEFAULT_PORT;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--file") && i + 1 < args.length) {
+                file = args[++i];
+            } else if (args[i].equals("--watch") && i + 1 < args.length) {
+                watch = args[++i];
+            } else if (args[i].equals("--query") && i + 1 < args.length) {
+                query = args[++i];
+            } else if (args[i].equals("--tickets") && i + 1 < args.length) {
+                tickets = args[++i];
+            } else if (args[i].equals("--simulate") && i + 1 < args.length && args[i + 1].matches("\\d+")) {
+                simulate = Integer.parseInt(args[++i]);
+                if (i + 1 < args.length && args[i + 1].matches("-?\\d+")) {
+                    seed = Long.parseLong(args[++i]);
+                }
+            } else if (args[i].equals("--randomness")) {
+                randomness = RANDOMNESS_RUNS;
+                if (i + 1 < args.length && args[i + 1].matches("\\d+")) {
+                    randomness = Math.max(1, Integer.parseInt(args[++i]));
+                }
+            } else if (args[i].equals("--generate")) {
+                generate = GENERATE_TOP;
+                if (i + 1 < args.length && args[i + 1].matches("\\d+")) {
+                    generate = Math.max(1, Integer.parseInt(args[++i]));
+                }
+            } else if (args[i].equals("--pairs") && i + 1 < args.length && args[i + 1].matches("\\d+(\\.\\d+)?")) {
+                pairWeight = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--sum") && i + 1 < args.length && args[i + 1].matches("\\d+\\.\\.\\d+")) {
+                sumRange = range(args[++i]);
+            } else if (args[i].equals("--odd") && i + 1 < args.length && args[i + 1].matches("\\d+\\.\\.\\d+")) {
+                oddRange = range(args[++i]);
+            } else if (args[i].equals("--prizes")) {
+                prizes = true;
+            } else if (args[i].equals("--from-store")) {
+                fromStore = true;
+            } else if (args[i].equals("--backtest")) {
+                backtestK = -1;
+                if (i + 1 < args.length && args[i + 1].matches("\\d+")) {
+                    backtestK = Integer.parseInt(args[++i]);
+                }
+            } else if (args[i].equals("--optimize")) {
+                optimize = "grid";
+                if (i + 1 < args.length && (args[i + 1].equals("grid") || args[i + 1].equals("random"))) {
+                    optimize = args[++i];
+                }
+                if (i + 1 < args.length && args[i + 1].matches("\\d{1,9}")) {
+                    optimizeN = Integer.parseInt(args[++i]);
+                }
+            } else if (args[i].equals("--top") && i + 1 < args.length && args[i + 1].matches("\\d+")) {
+                topK = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--port") && i + 1 < args.length && args[i + 1].matches("\\d+")) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--windows") && i + 1 < args.length) {
+                windows = args[++i];
+            } else if (args[i].equals("--format") && i + 1 < args.length) {
+                for (String format : args[++i].split(",")) {
+                    ReportSink sink = ReportSink.of(format.trim());
+                    if (sink == null) {
+                        System.out.println("Unknown format: " + format);
+                        return;
+                    }
+                    sinks.add(sink);
+                }
+            } else if (args[i].equals("--triples")) {
+                triples = true;
+            } else if (args[i].equals("--metrics")) {
+                metrics = true;
+            } else {
+                System.out.println("Unknown option: " + args[i]);
+                return;
+            }
+        }
+
+        if (optimize != null && optimizeN > 0
+                && (optimize.equals("grid") ? WeightSearch.gridSize(optimizeN) : optimizeN) > WeightSearch.MAX_CANDIDATES) {
+            System.out.println("--optimize " + optimize + " " + optimizeN + ": more than "
+                    + WeightSearch.MAX_CANDIDATES + " candidates.");
+            return;
+        }
+        if (sinks.isEmpty()) {
+            sinks.add(new HtmlReport());
+        }
+        ReportOptions options = new ReportOptions(triples, windows, sinks);
 
+        if (watch != null) {
+            Game only = Game.ofMode(mode);
+            if (only == null && !mode.equals("all")) {
+                System.out.println("The watch mode works with 5, 6, 7 or all.");
+                return;
+            }
+            if (windows != null || triples) {
+                // A watched export has no draw store for the pairs and the windows
+                System.out.println("The watch mode writes the number table only (like --file), "
+                        + "--windows and --triples need the draw store.");
+                return;
+            }
+            try {
+                processWatch(Path.of(watch), only != null ? List.of(only) : List.of(Game.values()), options, metrics);
+            } catch (IOException e) {
+                System.out.println("Exception: " + e.getMessage());
+                e.printStackTrace();
+            }
+            return;
+        }
+        if (mode.equals("all") && randomness > 0) {
+            try {
+                for (Game game : Game.values()) {
+                    processRandomness(DrawStore.pathOf(game), game, randomness);
+                }
+            } catch (IOException e) {
+                System.out.println("Exception: " + e.getMessage());
+                e.printStackTrace();
+            }
+            return;
+        }
+        if (mode.equals("all")) {
+            if (file != null || tickets != null || query != null || prizes || generate != 0 || simulate != 0 || backtestK != 0
+                    || optimize != null) {
+                System.out.println("The all mode works from the URL or with --from-store only.");
+                return;
+            }
+            List<Metrics> runs = new ArrayList<>();
+            boolean ok = processAll(fromStore, options, runs);
+            if (metrics) {
+                System.out.println(Metrics.toJson(runs));
+            }
+            System.exit(ok ? 0 : 1);
+        }
+        if (mode.equals("serve")) {
+            try {
+                StatsServer.start(port, triples, windows);
+            } catch (IOException e) {
+                System.out.println("Exception: " + e.getMessage());
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        Game game = Game.ofMode(mode);
+        if (game == null) {
+            System.out.println("Wrong mode.");
+            System.out.println("Use'5' (1..90, 5 numbers in row), "
+                    + "'6' (1..45, 6 numbers in row), "
+                    + "vagy '7' (1..35, 14 numbers in row).");
+            return;
+        }
+        if (backtestK < 0) {
+            backtestK = game.numbersPerDraw;
+        }
+        if (topK <= 0) {
+            topK = game.numbersPerDraw;
+        }
+
+        Metrics run = new Metrics(game);
         try {
-            String url;
-            if (mode.equals("5")) {
-                url = URL_OTOS;
-                // 5/90
-                processUrl(url, 90, 5);
-            } else if (mode.equals("6")) {
-                url = URL_HATOS;
-                // 6 lottery 1..45, 6 szám soronként
-                processUrl(url, 45, 6);
-            } else if (mode.equals("7")) {
-                url = URL_SKANDI;
-                // 7 (Skandi) mode: 1..35, 14 szám numbers in row
-                processUrl(url, 35, 14);
+            if (simulate > 0) {
+                Path path = Path.of("sim-" + game.id + ".csv");
+                SyntheticHistory.write(path, game, simulate, seed);
+                System.out.println("Finished, " + simulate + " draws written (" + path + ")..");
+            } else if (optimize != null) {
+                processOptimize(DrawStore.pathOf(game), game, optimize, optimizeN, topK);
+            } else if (backtestK > 0) {
+                processBacktest(DrawStore.pathOf(game), game, backtestK);
+            } else if (generate > 0) {
+                TicketGenerator.Constraints constraints = new TicketGenerator.Constraints(
+                        sumRange != null ? sumRange[0] : 0,
+                        sumRange != null ? sumRange[1] : game.numbersPerDraw * game.maxNumber,
+                        oddRange != null ? oddRange[0] : 0,
+                        oddRange != null ? oddRange[1] : game.numbersPerDraw);
+                processGenerate(DrawStore.pathOf(game), game, generate, pairWeight, constraints);
+            } else if (randomness > 0) {
+                processRandomness(DrawStore.pathOf(game), game, randomness);
+            } else if (prizes) {
+                processPrizes(file != null ? Path.of(file) : CsvDownloader.pathOf(game), game);
+            } else if (query != null) {
+                processQuery(DrawStore.pathOf(game), game, query);
+            } else if (tickets != null) {
+                processTickets(DrawStore.pathOf(game), game, Path.of(tickets));
+            } else if (file != null) {
+                processFile(Path.of(file), game, options, run);
+            } else if (fromStore) {
+                processStore(DrawStore.pathOf(game), game, options, REPORT, run);
             } else {
-                System.out.println("Wrong mode.");
-                System.out.println("Use'5' (1..90, 5 numbers in row), "
-                        + "'6' (1..45, 6 numbers in row), "
-                        + "vagy '7' (1..35, 14 numbers in row).");
+                processUrl(game.url, game, options, run);
             }
         } catch (IOException e) {
             System.out.println("Exception: " + e.getMessage());
             e.printStackTrace();
         }
+        if (metrics) {
+            System.out.println(Metrics.toJson(List.of(run)));
+        }
     }
 
     // -------------------------------------------------------------------------
-    // Process data from URL
+    // Process data from URL (incremental, on top of the saved snapshot)
     // -------------------------------------------------------------------------
-    private static void processUrl(String urlString, int maxNumber, int numbersPerRow) throws IOException {
+    private static void processUrl(String urlString, Game game, ReportOptions options, Metrics metrics)
+            throws IOException {
+        StatsSnapshot snapshot = update(urlString, game, metrics);
+        report(snapshot, game, options, REPORT, metrics);
+    }
+
+    // Download and fold into the snapshot and the draw store (I/O bound part)
+    static StatsSnapshot update(String urlString, Game game, Metrics metrics) throws IOException {
         System.out.println("Downloading data from: " + urlString);
-        String csvContent = downloadCsv(urlString);
-        
-        // Convert CSV content to 2D array
-        int[][] numbers = parseCsvContent(csvContent, maxNumber, numbersPerRow);
-        int totalRows = numbers.length;
-        
-        System.out.println("Total rows processed: " + totalRows);
-
-        Map<Integer, Integer> occurrences = countOccurrences(numbers, maxNumber);
-        GapStats gapStats = computeGapStats(numbers);
-
-        // Last draw
-        Map<Integer, Integer> latestRowMap = new HashMap<>();
-        for (int row = 0; row < numbers.length; row++) {
-            for (int col = 0; col < numbers[row].length; col++) {
-                int value = numbers[row][col];
-                if (!latestRowMap.containsKey(value)) {
-                    latestRowMap.put(value, row);// 0 = legfrissebb húzás
-                }
-            }
+        Metrics.Span downloading = metrics.start(Metrics.Phase.DOWNLOAD);
+        CsvDownloader.Download download = CsvDownloader.fetch(urlString, CsvDownloader.pathOf(game));
+        downloading.bytes(download.bytes).end();
+
+        Path snapshotPath = StatsSnapshot.pathOf(game);
+        Path storePath = DrawStore.pathOf(game);
+        StatsSnapshot snapshot = StatsSnapshot.load(snapshotPath, game);
+        if (snapshot != null && !storeMatches(storePath, game, snapshot)) {
+            System.out.println("Draw store does not match the snapshot, full rebuild.");
+            snapshot = null;
         }
-
-        // Since last draw
-        Map<Integer, Integer> sinceLastMap = new HashMap<>();
-        for (int num : occurrences.keySet()) {
-            Integer idx = latestRowMap.get(num);
-            int sinceLast = (idx == null) ? totalRows : idx;
-            sinceLastMap.put(num, sinceLast);
+        if (snapshot != null && !download.modified) {
+            // Same content as the last processed one, nothing to parse
+            System.out.println("Total rows processed: " + snapshot.stats.rows());
+            return snapshot;
         }
-        
-        // cycleFactor = sinceLast / avgGap
-        Map<Integer, Double> cycleFactorMap = new HashMap<>();
-
-        for (int num : occurrences.keySet()) {
-            int sinceLast = sinceLastMap.getOrDefault(num, 0);
-            double avgGap = gapStats.avgGap.getOrDefault(num, (double) totalRows);
-            double cycleFactor = (avgGap <= 0.0) ? 0.0 : sinceLast / avgGap;
-            cycleFactorMap.put(num, cycleFactor);
+        Metrics.Span parsing = metrics.start(Metrics.Phase.PARSE);
+        if (snapshot != null) {
+            snapshot = foldNewDraws(download.file, game, snapshot, storePath, parsing);
         }
+        if (snapshot == null) {
+            snapshot = parseCsvContent(download.file, game, storePath, parsing);
+        }
+        parsing.end();
 
-        // New scope: occurrences + maxGap + sinceLast
-        Map<Integer, Double> scores = calculateWeightedScore(
-            occurrences,
-            gapStats.maxGap,
-            sinceLastMap,
-            cycleFactorMap
-        );
+        System.out.println("Total rows processed: " + snapshot.stats.rows());
 
-        System.out.println("Finished, report is created (result.html)..");
+        snapshot.save(snapshotPath, game);
+        download.commit();
+        return snapshot;
+    }
 
-        writeToHtml(scores, occurrences, numbers, totalRows, gapStats.maxGap, gapStats.avgGap, sinceLastMap, "result.html");
+    // Statistics and report of the updated history (CPU bound part)
+    private static void report(StatsSnapshot snapshot, Game game, ReportOptions options, String reportName,
+                               Metrics metrics) throws IOException {
+        DrawStore store = DrawStore.open(DrawStore.pathOf(game));
+        Report report = buildReport(game, snapshot.stats, store, options.triples(), options.windows(), metrics);
+        writeReport(report, options.sinks(), reportName, metrics);
+    }
+
+    // Report of the statistics, with the pairs, the windows and the partitions
+    // of the draw store. Without stats the history is the join of the store's
+    // months (same state as DrawStore.stats(), no second pass).
+    static Report buildReport(Game game, StatsAccumulator stats, DrawStore store, boolean triples,
+                              String windows, Metrics metrics) throws IOException {
+        Metrics.Span span = metrics.start(Metrics.Phase.STATS);
+        PartitionStats partitions = PartitionStats.of(store);
+        StatsAccumulator history = stats != null ? stats : partitions.global();
+        Report report = new Report(game, NumberStats.of(history), CoOccurrence.of(store, triples),
+                windows(store, windows), partitions.lastYears(Report.YEARS), partitions.lastMonths(Report.MONTHS),
+                partitions.weekdays());
+        span.rows(history.rows()).end();
+        return report;
     }
 
     // -------------------------------------------------------------------------
-    // Download CSV from URL
+    // Every game at once: download and parsing on virtual threads, statistics
+    // on a pool of one thread per core. Returns true if every game succeeded;
+    // the metrics of the games are added to runs.
     // -------------------------------------------------------------------------
-    private static String downloadCsv(String urlString) throws IOException {
-        URL url = new URL(urlString);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-        connection.setConnectTimeout(10000);
-        connection.setReadTimeout(10000);
-        
-        int responseCode = connection.getResponseCode();
-        if (responseCode != HttpURLConnection.HTTP_OK) {
-            throw new IOException("Failed to download CSV: HTTP " + responseCode);
-        }
-
-        StringBuilder content = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
+    private static boolean processAll(boolean fromStore, ReportOptions options, List<Metrics> runs) {
+        ExecutorService cpu = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        Map<Game, Future<?>> games = new EnumMap<>(Game.class);
+
+        try (ExecutorService io = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Game game : Game.values()) {
+                String reportName = REPORT + "-" + game.id;
+                Metrics metrics = new Metrics(game);
+                runs.add(metrics);
+                games.put(game, io.submit(() -> {
+                    if (fromStore) {
+                        return cpu.submit(() -> {
+                            processStore(DrawStore.pathOf(game), game, options, reportName, metrics);
+                            return null;
+                        }).get();
+                    }
+                    StatsSnapshot snapshot = update(game.url, game, metrics);
+                    return cpu.submit(() -> {
+                        report(snapshot, game, options, reportName, metrics);
+                        return null;
+                    }).get();
+                }));
+            }
+        } finally {
+            cpu.shutdown();
+        }
+
+        boolean ok = true;
+        for (Map.Entry<Game, Future<?>> run : games.entrySet()) {
+            try {
+                run.getValue().get();
+                System.out.println(run.getKey().id + ": OK (" + REPORT + "-" + run.getKey().id + ".*)");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() instanceof ExecutionException ? e.getCause().getCause() : e.getCause();
+                System.out.println(run.getKey().id + ": FAILED (" + cause + ")");
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
             }
         }
-        
-        connection.disconnect();
-        return content.toString();
+        return ok;
     }
 
     // -------------------------------------------------------------------------
-    // Parse CSV content (same logic as readCsvTo2DArray but from String)
+    // Process local CSV file (memory-mapped, streamed into the statistics)
     // -------------------------------------------------------------------------
-    private static int[][] parseCsvContent(String csvContent, int maxNumber, int numbersPerRow) throws IOException {
-        List<int[]> rows = new ArrayList<>();
-        String[] lines = csvContent.split("\n");
-        boolean isFirstLine = true;
+    private static void processFile(Path path, Game game, ReportOptions options, Metrics metrics)
+            throws IOException {
+        System.out.println("Reading data from file: " + path);
 
-        for (String line : lines) {
-            line = line.replace("\uFEFF", "").trim();
-            if (line.isEmpty()) continue;
+        Metrics.Span parsing = metrics.start(Metrics.Phase.PARSE);
+        StatsSnapshot snapshot = readFile(path, game, parsing);
+        parsing.end();
 
-            if (line.endsWith(",")) line = line.substring(0, line.length() - 1).trim();
+        System.out.println("Total rows processed: " + snapshot.stats.rows());
 
-            // Separator: ';' vagy ','
-            String[] parts;
-            if (line.contains(";")) {
-                parts = line.split(";");
-            } else if (line.contains(",")) {
-                parts = line.split(",");
-            } else {
-                parts = new String[]{line};
-            }
+        writeFileReport(snapshot.stats, game, options, REPORT, metrics);
+    }
 
-            // Skip header row
-            if (isFirstLine && !isNumeric(parts)) {
-                isFirstLine = false;
-                continue;
-            }
-            isFirstLine = false;
-
-            // Lottery 6: numbers in last coloums
-            if (maxNumber == 45 && numbersPerRow == 6) {
-                List<String> numbers = new ArrayList<>();
-                // A számok a sor végén vannak (utolsó 6 oszlop)
-                for (int i = parts.length - 6; i < parts.length && i >= 0; i++) {
-                    String s = parts[i].trim();
-                    if (!s.isEmpty()) {
-                        try {
-                            int v = Integer.parseInt(s);
-                            if (v >= 1 && v <= maxNumber) {
-                                numbers.add(s);
-                            }
-                        } catch (NumberFormatException ignore) { }
-                    }
-                }
-                if (numbers.size() == numbersPerRow) {
-                    parts = numbers.toArray(new String[0]);
-                } else {
-                    // Unhappy path: try collect in other way
-                    numbers.clear();
-                    for (String s : parts) {
-                        s = s.trim();
-                        if (!s.isEmpty()) {
-                            try {
-                                int v = Integer.parseInt(s);
-                                if (v >= 1 && v <= maxNumber && numbers.size() < numbersPerRow) {
-                                    numbers.add(s);
-                                }
-                            } catch (NumberFormatException ignore) { }
-                        }
-                    }
-                   
+    // Statistics of a whole local export, with its newest draw
+    static StatsSnapshot readFile(Path path, Game game, Metrics.Span parsing) throws IOException {
+        CsvDrawParser parser = new CsvDrawParser(game);
+        StatsAccumulator stats = new StatsAccumulator(game.maxNumber);
+        DrawKey[] newestKey = new DrawKey[1];
+        MappedCsvReader.forEachLine(path, (buffer, from, to) -> {
+            if (parser.parseLine(buffer, from, to)) {
+                if (newestKey[0] == null) {
+                    newestKey[0] = parser.key();
                 }
+                stats.accept(parser.row());
             }
+            return true;
+        });
+        parsing.bytes(Files.size(path)).parsed(stats.rows(), parser);
 
-            // 5/90 export – numbers are in last 5 coloums
-            if (maxNumber == 90 && numbersPerRow == 5) {
-                List<String> numbers = new ArrayList<>();
-                for (int i = parts.length - 5; i < parts.length && i >= 0; i++) {
-                    String s = parts[i].trim();
-                    if (!s.isEmpty()) {
-                        try {
-                            int v = Integer.parseInt(s);
-                            if (v >= 1 && v <= maxNumber) {
-                                numbers.add(s);
-                            }
-                        } catch (NumberFormatException ignore) { }
-                    }
-                }
-                if (numbers.size() == numbersPerRow) {
-                    parts = numbers.toArray(new String[0]);
-                } else {
-                    // Unhapp path solution 
-                    numbers.clear();
-                    for (String s : parts) {
-                        s = s.trim();
-                        if (!s.isEmpty()) {
-                            try {
-                                int v = Integer.parseInt(s);
-                                if (v >= 1 && v <= maxNumber && numbers.size() < numbersPerRow) {
-                                    numbers.add(s);
-                                }
-                            } catch (NumberFormatException ignore) { }
-                        }
-                    }
-                    if (numbers.size() == numbersPerRow) {
-                        parts = numbers.toArray(new String[0]);
-                    } else {
-                        continue;
-                    }
+        if (stats.rows() == 0) {
+            throw new IOException("Error.CSV format issue");
+        }
+        return new StatsSnapshot(stats, newestKey[0]);
+    }
+
+    // Number table only (a local export has no draw store for the pairs and windows)
+    private static void writeFileReport(StatsAccumulator stats, Game game, ReportOptions options, String reportName,
+                                        Metrics metrics) throws IOException {
+        Metrics.Span statsPhase = metrics.start(Metrics.Phase.STATS);
+        Report report = new Report(game, NumberStats.of(stats), null, List.of(), List.of(), List.of(), List.of());
+        statsPhase.rows(stats.rows()).end();
+        writeReport(report, options.sinks(), reportName, metrics);
+    }
+
+    // -------------------------------------------------------------------------
+    // Watch a directory of local exports (see ArchiveWatcher). The statistics
+    // of every file stay in memory; a change folds in the draws above the
+    // file's newest known draw, or reads the file again if it does not have
+    // that draw any more (replaced by another history). Every file has its own
+    // report, named after it (sim-hatos.csv -> result-sim-hatos.*).
+    // -------------------------------------------------------------------------
+    private static void processWatch(Path dir, List<Game> games, ReportOptions options, boolean printMetrics)
+            throws IOException {
+        Map<Path, StatsSnapshot> files = new HashMap<>();
+        ArchiveWatcher.watch(dir, games, (game, file) -> {
+            if (!Files.exists(file)) {
+                if (files.remove(file) != null) {
+                    System.out.println(file + ": removed");
                 }
+                return;
+            }
+            Metrics metrics = new Metrics(game);
+            Metrics.Span parsing = metrics.start(Metrics.Phase.PARSE);
+            StatsSnapshot known = files.get(file);
+            StatsSnapshot snapshot = refresh(file, game, known, parsing);
+            parsing.end();
+            if (snapshot == known) {
+                System.out.println(file + ": no new draws");
+                return;
             }
+            files.put(file, snapshot);
 
-            // 7-es (Skandi): numbers are last 14 coloums
-            if (maxNumber == 35 && numbersPerRow == 14) {
-                List<String> numbers = new ArrayList<>();
-                for (int i = parts.length - 14; i < parts.length && i >= 0; i++) {
-                    String s = parts[i].trim();
-                    if (!s.isEmpty()) {
-                        try {
-                            int v = Integer.parseInt(s);
-                            if (v >= 1 && v <= maxNumber) {
-                                numbers.add(s);
-                            }
-                        } catch (NumberFormatException ignore) { }
-                    }
-                }
-                if (numbers.size() == numbersPerRow) {
-                    parts = numbers.toArray(new String[0]);
-                } else {
-                    // Ha nem sikerült, próbáljuk a teljes sorból
-                    numbers.clear();
-                    for (String s : parts) {
-                        s = s.trim();
-                        if (!s.isEmpty()) {
-                            try {
-                                int v = Integer.parseInt(s);
-                                if (v >= 1 && v <= maxNumber && numbers.size() < numbersPerRow) {
-                                    numbers.add(s);
-                                }
-                            } catch (NumberFormatException ignore) { }
-                        }
-                    }
-                    if (numbers.size() == numbersPerRow) {
-                        parts = numbers.toArray(new String[0]);
-                    } else {
-                        continue;
-                    }
-                }
+            System.out.println(file + ": total rows processed: " + snapshot.stats.rows());
+            writeFileReport(snapshot.stats, game, options, REPORT + "-" + baseName(file), metrics);
+            if (printMetrics) {
+                System.out.println(Metrics.toJson(List.of(metrics)));
             }
+        });
+    }
 
-            // Általános eset: csak számokat gyűjtünk
-            List<String> tokens = new ArrayList<>();
-            for (String s : parts) {
-                s = s.trim();
-                if (!s.isEmpty()) {
-                    try {
-                        int v = Integer.parseInt(s);
-                        if (v >= 1 && v <= maxNumber && tokens.size() < numbersPerRow) {
-                            tokens.add(s);
-                        }
-                    } catch (NumberFormatException ignore) { }
+    // Statistics of a changed export from its known ones (null at the first
+    // sight): the new draws folded in, or the whole file read again. The known
+    // snapshot itself is returned if the file has no new draws.
+    static StatsSnapshot refresh(Path file, Game game, StatsSnapshot known, Metrics.Span parsing)
+            throws IOException {
+        if (known != null) {
+            NewDraws draws = readNewDraws(file, game, known.newestKey, parsing);
+            if (!draws.found()) {
+                System.out.println(file + ": newest known draw is missing, reading the whole file.");
+            } else if (draws.rows().isEmpty()) {
+                return known;
+            } else {
+                for (int i = draws.rows().size() - 1; i >= 0; i--) {
+                    known.stats.acceptNewer(draws.rows().get(i));
                 }
+                System.out.println(file + ": new draws: " + draws.rows().size());
+                return new StatsSnapshot(known.stats, draws.keys().get(0));
             }
+        }
+        return readFile(file, game, parsing);
+    }
 
-            if (tokens.size() != numbersPerRow) {
-                continue;
-            }
+    // File name without the extension
+    private static String baseName(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    // -------------------------------------------------------------------------
+    // Process the binary draw store (one mmap, no CSV parsing)
+    // -------------------------------------------------------------------------
+    private static void processStore(Path path, Game game, ReportOptions options, String reportName,
+                                     Metrics metrics) throws IOException {
+        System.out.println("Reading draw store: " + path);
+        DrawStore store = openStore(path, game);
+
+        System.out.println("Total rows processed: " + store.size());
+
+        Report report = buildReport(game, null, store, options.triples(), options.windows(), metrics);
+        writeReport(report, options.sinks(), reportName, metrics);
+    }
 
-            int[] row = new int[numbersPerRow];
-            for (int i = 0; i < numbersPerRow; i++) {
-                row[i] = Integer.parseInt(tokens.get(i));
+    // Statistics of the requested windows (comma separated, see WindowIndex.parse)
+    private static List<Report.Window> windows(DrawStore store, String specs) throws IOException {
+        List<Report.Window> windows = new ArrayList<>();
+        if (specs == null) {
+            return windows;
+        }
+        WindowIndex index = WindowIndex.of(store);
+        for (String spec : specs.split(",")) {
+            int[] range = index.parse(spec.trim());
+            if (range == null) {
+                throw new IOException("Wrong window: " + spec);
             }
+            String label = spec.trim().matches("\\d+") ? "Utolsó " + spec.trim() + " húzás" : spec.trim();
+            windows.add(new Report.Window(label, NumberStats.of(index.stats(range[0], range[1]))));
+        }
+        return windows;
+    }
 
-            rows.add(row);
+    static DrawStore openStore(Path path, Game game) throws IOException {
+        if (!Files.exists(path)) {
+            throw new IOException("No draw store (" + path + "), run the download mode first");
+        }
+        DrawStore store = DrawStore.open(path);
+        if (!store.matches(game)) {
+            throw new IOException("Draw store of another game: " + path);
+        }
+        if (store.size() == 0) {
+            throw new IOException("Empty draw store: " + path);
         }
+        return store;
+    }
 
-        if (rows.isEmpty()) {
-            throw new IOException("Error.CSV format issue");
+    // -------------------------------------------------------------------------
+    // Search of the score weights with the most top K hits (see WeightSearch)
+    // -------------------------------------------------------------------------
+    private static void processOptimize(Path path, Game game, String method, int n, int topK)
+            throws IOException {
+        System.out.println("Reading draw store: " + path);
+        DrawStore store = openStore(path, game);
+
+        Backtest backtest = Backtest.of(store.rows(), game.maxNumber);
+        WeightSearch search = method.equals("random")
+                ? WeightSearch.random(backtest, topK, n > 0 ? n : OPTIMIZE_RANDOM, OPTIMIZE_SEED)
+                : WeightSearch.grid(backtest, topK, n > 0 ? n : OPTIMIZE_GRID);
+
+        int scored = Math.max(1, backtest.draws() - backtest.warmup);
+        Backtest.Scratch scratch = new Backtest.Scratch(game.maxNumber, topK);
+        int defaultHits = backtest.totalHits(ScoreModel.DEFAULT, topK, scratch);
+        System.out.println("Weight search top " + topK + ": " + search.candidates() + " candidates, "
+                + scored + " draws scored");
+        System.out.println(String.format(Locale.ROOT, "  default (%s): %.4f hits/draw",
+                ScoreModel.DEFAULT, (double) defaultHits / scored));
+        for (int i : search.best(10)) {
+            System.out.println(String.format(Locale.ROOT, "  %s: %.4f hits/draw",
+                    search.candidate(i), (double) search.totalHits(i) / scored));
         }
+    }
 
-        return rows.toArray(new int[0][0]);
+    // "a..b" as {a, b}
+    private static int[] range(String text) {
+        int dots = text.indexOf("..");
+        return new int[]{Integer.parseInt(text.substring(0, dots)), Integer.parseInt(text.substring(dots + 2))};
     }
 
     // -------------------------------------------------------------------------
-    // Checking of numeric format
+    // Best whole tickets by score
     // -------------------------------------------------------------------------
-    private static boolean isNumeric(String[] parts) {
-        int numberCount = 0;
-        for (String s : parts) {
-            s = s.trim();
-            if (!s.isEmpty()) {
-                try {
-                    Integer.parseInt(s);
-                    numberCount++;
-                } catch (NumberFormatException e) {
-                    return false;
-                }
+    private static void processGenerate(Path path, Game game, int topK, double pairWeight,
+                                        TicketGenerator.Constraints constraints) throws IOException {
+        System.out.println("Reading draw store: " + path);
+        DrawStore store = openStore(path, game);
+
+        TicketGenerator generator = TicketGenerator.of(NumberStats.of(store.stats()), game.numbersPerDraw, topK,
+                pairWeight > 0 ? CoOccurrence.of(store, false) : null, pairWeight, constraints);
+        System.out.println("Best " + generator.count() + " tickets:");
+        for (int i = 0; i < generator.count(); i++) {
+            StringBuilder line = new StringBuilder("  ");
+            for (int num : generator.ticket(i)) {
+                line.append(String.format(Locale.ROOT, "%2d ", num));
             }
+            System.out.println(line.append(String.format(Locale.ROOT, " %.4f", generator.score(i))));
         }
-      
-        return numberCount >= 5;
     }
 
     // -------------------------------------------------------------------------
-    // Átlagos és max kihagyás (gap) statok
+    // Randomness tests of the draw store, Monte Carlo p-values
     // -------------------------------------------------------------------------
-    private static class GapStats {
-        Map<Integer, Integer> maxGap = new HashMap<>();
-        Map<Integer, Double> avgGap = new HashMap<>();
+    private static void processRandomness(Path path, Game game, int runs) throws IOException {
+        System.out.println("Reading draw store: " + path);
+        DrawStore store = openStore(path, game);
+
+        long start = System.nanoTime();
+        RandomnessSuite suite = RandomnessSuite.of(store).simulate(runs, RANDOMNESS_SEED);
+        System.out.println(String.format(Locale.ROOT, "%s: %d drawings, %d simulated histories (%.1f s)",
+                game.id, suite.drawings(), suite.runs(), (System.nanoTime() - start) / 1e9));
+        String[] names = {"occurrences", "gaps (geometric)", "pair independence"};
+        for (int test = 0; test < RandomnessSuite.TESTS; test++) {
+            System.out.println(String.format(Locale.ROOT, "  %-18s chi2 %10.2f  df %5d  simulated mean %10.2f  p %.4f",
+                    names[test], suite.statistic(test), suite.degreesOfFreedom(test), suite.simulatedMean(test),
+                    suite.pValue(test)));
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Prize columns of an export (not kept in the draw store)
+    // -------------------------------------------------------------------------
+    private static void processPrizes(Path csvFile, Game game) throws IOException {
+        if (!Files.exists(csvFile)) {
+            throw new IOException("No export (" + csvFile + "), run the download mode first or use --file");
+        }
+        System.out.println("Reading prizes from: " + csvFile);
+        PrizeTable table = PrizeTable.read(csvFile, game);
+        try (Writer writer = Files.newBufferedWriter(Path.of(PRIZE_REPORT), StandardCharsets.UTF_8)) {
+            PrizeReport.write(table, writer);
+        }
+        System.out.println("Draws: " + table.size() + ", prize columns decoded: " + table.decodedColumns()
+                + " of " + 2 * table.tiers);
+        System.out.println("Finished, report is created (" + PRIZE_REPORT + ")..");
     }
 
-    private static GapStats computeGapStats(int[][] numbers) {
-        GapStats result = new GapStats();
+    // -------------------------------------------------------------------------
+    // Ad-hoc query over the inverted index of the draw store
+    // -------------------------------------------------------------------------
+    private static void processQuery(Path path, Game game, String text) throws IOException {
+        System.out.println("Reading draw store: " + path);
+        DrawStore store = openStore(path, game);
+
+        long start = System.nanoTime();
+        DrawIndex index = DrawIndex.of(store);
+        long built = System.nanoTime();
+        DrawIndex.Bitmap result = index.query(text);
+        long answered = System.nanoTime();
+        if (result == null) {
+            throw new IOException("Wrong query: " + text);
+        }
 
-        Map<Integer, Integer> lastSeen = new HashMap<>();
-        Map<Integer, Integer> maxGap = new HashMap<>();
-        Map<Integer, Integer> gapSum = new HashMap<>();
-        Map<Integer, Integer> gapCount = new HashMap<>();
+        int[] positions = result.positions();
+        int[] row = new int[game.numbersPerRow];
+        for (int p = positions.length - 1; p >= 0; p--) {
+            int i = positions[p];
+            StringBuilder line = new StringBuilder("  ");
+            line.append(store.year(i)).append('/').append(store.week(i));
+            if (store.date(i) != 0) {
+                line.append(String.format(Locale.ROOT, " %d.%02d.%02d.", store.date(i) / 10000, store.date(i) / 100 % 100,
+                        store.date(i) % 100));
+            }
+            line.append(':');
+            int count = store.numbers(i, row);
+            for (int j = 0; j < count; j++) {
+                line.append(' ').append(row[j]);
+            }
+            System.out.println(line);
+        }
+        System.out.println(String.format(Locale.ROOT, "%d of %d draws match (index %.1f ms, query %.1f µs)",
+                positions.length, index.size(), (built - start) / 1e6, (answered - built) / 1e3));
+    }
 
-        for (int rowIndex = 0; rowIndex < numbers.length; rowIndex++) {
-            int rowNumber = rowIndex + 1;
-            for (int num : numbers[rowIndex]) {
-                if (lastSeen.containsKey(num)) {
-                    int gap = rowNumber - lastSeen.get(num);
+    // -------------------------------------------------------------------------
+    // Hits of a ticket file in the draw history
+    // -------------------------------------------------------------------------
+    private static void processTickets(Path path, Game game, Path ticketFile) throws IOException {
+        System.out.println("Reading draw store: " + path);
+        TicketCheck check = TicketCheck.of(openStore(path, game));
 
-                    int currentMax = maxGap.getOrDefault(num, 0);
-                    if (gap > currentMax) {
-                        maxGap.put(num, gap);
-                    }
+        System.out.println("Checking tickets: " + ticketFile);
+        try (Writer writer = Files.newBufferedWriter(Path.of(TICKET_REPORT), StandardCharsets.UTF_8)) {
+            check.run(ticketFile, writer);
+        }
 
-                    gapSum.put(num, gapSum.getOrDefault(num, 0) + gap);
-                    gapCount.put(num, gapCount.getOrDefault(num, 0) + 1);
+        System.out.println("Tickets checked: " + check.checked() + " against " + check.drawings()
+                + " drawings, rejected lines: " + check.rejected());
+        for (int h = check.ticketSize; h >= 2; h--) {
+            System.out.println("  " + h + " hits: " + check.total(h));
+        }
+        System.out.println("Finished, report is created (" + TICKET_REPORT + ")..");
+    }
+
+    // -------------------------------------------------------------------------
+    // Walk-forward backtest of the score over the draw store
+    // -------------------------------------------------------------------------
+    private static void processBacktest(Path path, Game game, int topK) throws IOException {
+        System.out.println("Reading draw store: " + path);
+        DrawStore store = openStore(path, game);
+
+        Backtest.Result backtest = Backtest.of(store.rows(), game.maxNumber).run(ScoreModel.DEFAULT, topK);
+        int draws = backtest.draws();
+        System.out.println(String.format(Locale.ROOT, "Backtest top %d: %d draws scored, %.4f hits/draw (random: %.4f)",
+                topK, backtest.scoredDraws(0, draws),
+                (double) backtest.totalHits(0, draws) / Math.max(1, backtest.scoredDraws(0, draws)),
+                backtest.expectedHits(0, draws) / Math.max(1, backtest.scoredDraws(0, draws))));
+
+        System.out.println("Finished, report is created (backtest.html)..");
+        writeBacktestHtml(backtest, store, "backtest.html");
+    }
+
+    private static boolean storeMatches(Path storePath, Game game, StatsSnapshot snapshot) {
+        try {
+            // Not opened as a DrawStore: its mapping would block the append
+            int[] count = new int[1];
+            DrawKey newestKey = DrawStore.newestKey(storePath, game, count);
+            return count[0] == snapshot.stats.rows() && snapshot.newestKey.equals(newestKey);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // One file per format: <reportName>.<extension>
+    private static void writeReport(Report report, List<ReportSink> sinks, String reportName, Metrics metrics)
+            throws IOException {
+        Metrics.Span writing = metrics.start(Metrics.Phase.REPORT);
+        List<String> files = new ArrayList<>();
+        for (ReportSink sink : sinks) {
+            String file = reportName + "." + sink.extension();
+            try (Writer writer = Files.newBufferedWriter(Path.of(file), StandardCharsets.UTF_8)) {
+                sink.write(report, writer);
+            }
+            writing.bytes(Files.size(Path.of(file)));
+            files.add(file);
+        }
+        writing.end();
+        System.out.println("Finished, report is created (" + String.join(", ", files) + ")..");
+    }
+
+    // -------------------------------------------------------------------------
+    // Parse CSV content (byte level, see CsvDrawParser), full rebuild of the
+    // statistics and of the draw store
+    // -------------------------------------------------------------------------
+    static StatsSnapshot parseCsvContent(Path csvFile, Game game, Path storePath, Metrics.Span parsing)
+            throws IOException {
+        CsvDrawParser parser = new CsvDrawParser(game);
+        StatsAccumulator stats = new StatsAccumulator(game.maxNumber);
+        DrawKey[] newestKey = new DrawKey[1];
+
+        try (DrawStore.Writer store = DrawStore.create(storePath, game, true)) {
+            MappedCsvReader.forEachLine(csvFile, (buffer, from, to) -> {
+                if (parser.parseLine(buffer, from, to)) {
+                    DrawKey key = parser.key();
+                    if (newestKey[0] == null) {
+                        newestKey[0] = key;
+                    }
+                    stats.accept(parser.row());
+                    store.add(parser.row(), key.year(), key.week(), parser.weekday(), key.date());
                 }
-                lastSeen.put(num, rowNumber);
+                return true;
+            });
+            parsing.bytes(Files.size(csvFile)).parsed(stats.rows(), parser);
+
+            // The last good store stays in place if the content has no draws
+            if (stats.rows() == 0) {
+                throw new IOException("Error.CSV format issue");
             }
+            store.commit();
         }
 
-        Map<Integer, Double> avgGap = new HashMap<>();
-        for (Map.Entry<Integer, Integer> e : gapSum.entrySet()) {
-            int num = e.getKey();
-            int sum = e.getValue();
-            int count = gapCount.getOrDefault(num, 1);
-            avgGap.put(num, (double) sum / count);
+        return new StatsSnapshot(stats, newestKey[0]);
+    }
+
+    // -------------------------------------------------------------------------
+    // Fold the draws newer than the snapshot into it (newest draws are on top)
+    // and append them to the draw store.
+    // Returns null if the snapshot's newest draw is not in the content.
+    // -------------------------------------------------------------------------
+    static StatsSnapshot foldNewDraws(Path csvFile, Game game, StatsSnapshot snapshot,
+                                      Path storePath, Metrics.Span parsing) throws IOException {
+        NewDraws draws = readNewDraws(csvFile, game, snapshot.newestKey, parsing);
+        if (!draws.found()) {
+            System.out.println("Snapshot does not match the history, full rebuild.");
+            return null;
         }
+        List<int[]> newRows = draws.rows();
+        List<DrawKey> newKeys = draws.keys();
+        List<Integer> newWeekdays = draws.weekdays();
+
+        // Oldest new draw first
+        try (DrawStore.Writer store = DrawStore.append(storePath, game)) {
+            for (int i = newRows.size() - 1; i >= 0; i--) {
+                DrawKey key = newKeys.get(i);
+                snapshot.stats.acceptNewer(newRows.get(i));
+                store.add(newRows.get(i), key.year(), key.week(), newWeekdays.get(i), key.date());
+            }
+            store.commit();
+        }
+        System.out.println("Snapshot used, new draws: " + newRows.size());
+
+        return newRows.isEmpty() ? snapshot : new StatsSnapshot(snapshot.stats, newKeys.get(0));
+    }
+
+    // Read the export down to the known newest draw only (newest draws are on top)
+    private static NewDraws readNewDraws(Path csvFile, Game game, DrawKey newestKey, Metrics.Span parsing)
+            throws IOException {
+        CsvDrawParser parser = new CsvDrawParser(game);
+        List<int[]> rows = new ArrayList<>();
+        List<DrawKey> keys = new ArrayList<>();
+        List<Integer> weekdays = new ArrayList<>();
+        boolean[] found = new boolean[1];
 
-        result.maxGap = maxGap;
-        result.avgGap = avgGap;
-        return result;
+        MappedCsvReader.forEachLine(csvFile, (buffer, from, to) -> {
+            if (!parser.parseLine(buffer, from, to)) {
+                return true;
+            }
+            if (parser.keyEquals(newestKey)) {
+                found[0] = true;
+                return false;
+            }
+            rows.add(parser.row().clone());
+            keys.add(parser.key());
+            weekdays.add(parser.weekday());
+            return true;
+        });
+        parsing.parsed(rows.size(), parser);
+        return new NewDraws(rows, keys, weekdays, found[0]);
     }
 
     // -------------------------------------------------------------------------
-    // HTML riport
+    // Backtest riport
     // -------------------------------------------------------------------------
-    public static void writeToHtml(Map<Integer, Double> scores,
-                                   Map<Integer, Integer> occurrences,
-                                   int[][] numbers,
-                                   int totalRows,
-                                   Map<Integer, Integer> maxGaps,
-                                   Map<Integer, Double> avgGaps,
-                                   Map<Integer, Integer> sinceLastMap,
-                                   String filePath) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
+    static void writeBacktestHtml(Backtest.Result backtest, DrawStore store, String filePath) throws IOException {
+        int draws = backtest.draws();
+
+        try (Writer writer = Files.newBufferedWriter(Path.of(filePath), StandardCharsets.UTF_8)) {
             writer.write("<html><head>");
             writer.write("<meta charset=\"UTF-8\">");
-            writer.write("<title>Lottó statistics</title>");
-
+            writer.write("<title>Lottó backtest</title>");
             writer.write("<style>");
             writer.write("body { font-family: Arial, sans-serif; }");
             writer.write("table { border-collapse: collapse; margin-top: 16px; }");
             writer.write("th, td { border: 1px solid #ccc; padding: 4px 8px; text-align: right; }");
             writer.write("th { background-color: #f0f0f0; }");
             writer.write("td:first-child, th:first-child { text-align: center; }");
-
-            // Kék skála – sinceLast
-            writer.write(".since1 { background-color: #e3f2fd; }");
-            writer.write(".since2 { background-color: #bbdefb; }");
-            writer.write(".since3 { background-color: #90caf9; }");
-            writer.write(".since4 { background-color: #42a5f5; }");
-
-            // Kék skála – maxGap
-            writer.write(".gap1 { background-color: #e3f2fd; }");
-            writer.write(".gap2 { background-color: #bbdefb; }");
-            writer.write(".gap3 { background-color: #90caf9; }");
-            writer.write(".gap4 { background-color: #42a5f5; }");
-
-            // Kék skála – Darab (fordított: kevés darab = sötét)
-            writer.write(".occ1 { background-color: #e3f2fd; }"); // legtöbb -> világos
-            writer.write(".occ2 { background-color: #bbdefb; }");
-            writer.write(".occ3 { background-color: #90caf9; }");
-            writer.write(".occ4 { background-color: #42a5f5; }"); // legkevesebb -> sötét
-
             writer.write("</style>");
             writer.write("</head><body>");
 
-            writer.write("<h1>Lottó statistics</h1>");
-            writer.write("<p>Total draws: " + totalRows + "</p>");
-
-            if (numbers.length > 0 && numbers[0].length >= 5) {
-                writer.write("<h2>Last draw:</h2><p>");
-                for (int i = 0; i < Math.min(6, numbers[0].length); i++) {
-                    writer.write(numbers[0][i] + " ");
-                }
-                writer.write("</p>");
-            }
-
-            // sinceLast range
-            int minSince = sinceLastMap.values().stream().min(Integer::compare).orElse(0);
-            int maxSince = sinceLastMap.values().stream().max(Integer::compare).orElse(0);
-            int sinceRange = maxSince - minSince;
-
-            final int sinceRangeFinal = sinceRange;
-            final double s1, s2, s3;
-            if (sinceRangeFinal <= 0) {
-                s1 = s2 = s3 = maxSince;
-            } else {
-                double step = sinceRangeFinal / 4.0;
-                s1 = minSince + step;
-                s2 = minSince + 2 * step;
-                s3 = minSince + 3 * step;
-            }
-
-            // dinamikus maxGap range
-            int minGap = maxGaps.values().stream().min(Integer::compare).orElse(0);
-            int maxGap = maxGaps.values().stream().max(Integer::compare).orElse(0);
-            int gapRange = maxGap - minGap;
-
-            final int gapRangeFinal = gapRange;
-            final double t1, t2, t3;
-            if (gapRangeFinal <= 0) {
-                t1 = t2 = t3 = maxGap;
-            } else {
-                double step = gapRangeFinal / 4.0;
-                t1 = minGap + step;
-                t2 = minGap + 2 * step;
-                t3 = minGap + 3 * step;
-            }
-
-            // occurrences range
-            int minOcc = occurrences.values().stream().min(Integer::compare).orElse(0);
-            int maxOcc = occurrences.values().stream().max(Integer::compare).orElse(0);
-            int occRange = maxOcc - minOcc;
-
-            final int occRangeFinal = occRange;
-            final double o1, o2, o3;
-            if (occRangeFinal <= 0) {
-                o1 = o2 = o3 = maxOcc;
-            } else {
-                double step = occRangeFinal / 4.0;
-                o1 = minOcc + step;
-                o2 = minOcc + 2 * step;
-                o3 = minOcc + 3 * step;
-            }
+            writer.write("<h1>Lottó backtest</h1>");
+            writer.write("<p>Top " + backtest.topK + " numbers by score, computed from the older draws only. "
+                    + "Total draws: " + draws + ", first " + backtest.warmup() + " draws are not scored.</p>");
 
-            writer.write("<h2>Szám-statisztika</h2>");
+            // Hit rate curve, one row per block of draws
+            writer.write("<h2>Találati arány</h2>");
             writer.write("<table>");
             writer.write("<thead><tr>"
-                    + "<th>Szám</th>"
-                    + "<th>Darab</th>"
-                    + "<th>Húzások az utolsó óta</th>"
-                    + "<th>Max kihagyás</th>"
-                    + "<th>Átlag kihagyás</th>"
-                    + "<th>Súlyozott pontszám</th>"
+                    + "<th>Időszak</th>"
+                    + "<th>Húzások</th>"
+                    + "<th>Átlag találat</th>"
+                    + "<th>Véletlen várható</th>"
+                    + "<th>Halmozott átlag</th>"
                     + "</tr></thead>");
             writer.write("<tbody>");
-
-            scores.entrySet().stream()
-                    .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed())
-                    .forEach(entry -> {
-                        int num = entry.getKey();
-                        double score = entry.getValue();
-
-                        int occ = occurrences.getOrDefault(num, 0);
-                        int sinceLast = sinceLastMap.getOrDefault(num, 0);
-                        int maxGapVal = maxGaps.getOrDefault(num, 0);
-                        double avgGapVal = avgGaps.getOrDefault(num, 0.0);
-
-                        String sinceClass;
-                        if (sinceRangeFinal <= 0) sinceClass = "since4";
-                        else if (sinceLast <= s1) sinceClass = "since1";
-                        else if (sinceLast <= s2) sinceClass = "since2";
-                        else if (sinceLast <= s3) sinceClass = "since3";
-                        else sinceClass = "since4";
-
-                        String gapClass;
-                        if (gapRangeFinal <= 0) gapClass = "gap4";
-                        else if (maxGapVal <= t1) gapClass = "gap1";
-                        else if (maxGapVal <= t2) gapClass = "gap2";
-                        else if (maxGapVal <= t3) gapClass = "gap3";
-                        else gapClass = "gap4";
-
-                        
-                        String occClass;
-                        if (occRangeFinal <= 0) occClass = "occ3";
-                        else if (occ <= o1) occClass = "occ4";
-                        else if (occ <= o2) occClass = "occ3";
-                        else if (occ <= o3) occClass = "occ2";
-                        else occClass = "occ1";
-
-                        try {
-                            writer.write(String.format(
-                                    Locale.US,
-                                    "<tr><td>%d</td><td class='%s'>%d</td><td class='%s'>%d</td><td class='%s'>%d</td><td>%.2f</td><td>%.4f</td></tr>",
-                                    num,
-                                    occClass, occ,
-                                    sinceClass, sinceLast,
-                                    gapClass, maxGapVal,
-                                    avgGapVal,
-                                    score
-                            ));
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    });
-
+            for (int from = backtest.warmup(); from < draws; from += BACKTEST_BLOCK) {
+                int to = Math.min(draws, from + BACKTEST_BLOCK);
+                int scored = backtest.scoredDraws(from, to);
+                int cumulative = backtest.scoredDraws(0, to);
+                writer.write(String.format(
+                        Locale.ROOT,
+                        "<tr><td>%d/%d - %d/%d</td><td>%d</td><td>%.3f</td><td>%.3f</td><td>%.3f</td></tr>",
+                        store.year(from), store.week(from), store.year(to - 1), store.week(to - 1),
+                        scored,
+                        (double) backtest.totalHits(from, to) / scored,
+                        backtest.expectedHits(from, to) / scored,
+                        (double) backtest.totalHits(0, to) / cumulative
+                ));
+            }
             writer.write("</tbody></table>");
-            writer.write("</body></html>");
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
 
-    // -------------------------------------------------------------------------
-    // Occurance
-    // -------------------------------------------------------------------------
-    private static Map<Integer, Integer> countOccurrences(int[][] numbers, int maxNumber) {
-        Map<Integer, Integer> occurrences = new HashMap<>();
-        for (int[] row : numbers) {
-            for (int num : row) {
-                occurrences.put(num, occurrences.getOrDefault(num, 0) + 1);
+            // Distribution of the hit counts
+            int scored = backtest.scoredDraws(0, draws);
+            int[] distribution = backtest.hitDistribution();
+            writer.write("<h2>Találatok eloszlása</h2>");
+            writer.write("<table>");
+            writer.write("<thead><tr><th>Találat</th><th>Húzások</th><th>Arány</th></tr></thead>");
+            writer.write("<tbody>");
+            for (int h = 0; h < distribution.length; h++) {
+                writer.write(String.format(Locale.ROOT, "<tr><td>%d</td><td>%d</td><td>%.4f</td></tr>",
+                        h, distribution[h], scored == 0 ? 0.0 : (double) distribution[h] / scored));
             }
-        }
-        return occurrences;
-    }
+            writer.write("</tbody></table>");
 
-    // -------------------------------------------------------------------------
-    // New score (occurrences + maxGap + sinceLast)
-    // -------------------------------------------------------------------------
-    private static Map<Integer, Double> calculateWeightedScore(
-        Map<Integer, Integer> occurrences,
-        Map<Integer, Integer> maxGaps,
-        Map<Integer, Integer> sinceLastMap,
-        Map<Integer, Double> cycleFactorMap
-    ) {
-        Map<Integer, Double> scores = new HashMap<>();
-
-        int maxOcc = occurrences.values().stream().max(Integer::compare).orElse(1);
-        int maxGap = maxGaps.values().stream().max(Integer::compare).orElse(1);
-        int maxSince = sinceLastMap.values().stream().max(Integer::compare).orElse(1);
-        double maxCycle = cycleFactorMap.values()
-            .stream()
-            .max(Double::compare)
-            .orElse(1.0);
-
-        for (int num : occurrences.keySet()) {
-            int occ = occurrences.getOrDefault(num, 0);
-            int gap = maxGaps.getOrDefault(num, 0);
-            int since = sinceLastMap.getOrDefault(num, 0);
-
-            double normOcc = (double) occ / maxOcc;
-            double normGap = (double) gap / maxGap;
-            double normSince = (double) since / maxSince;
-            double cycle = cycleFactorMap.getOrDefault(num, 0.0);
-            double normCycle = cycle / maxCycle;
-
-            double score = normOcc * 0.25 + normGap * 0.20 + normSince * 0.25 + normCycle * 0.30;
-            scores.put(num, score);
-        }
-
-        return scores;
+            writer.write("</body></html>");
+        }
     }
 }
@@ -0,0 +1,82 @@
+package karsaib.lotto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Reads a local CSV export through a memory-mapped FileChannel and hands it
+ * over line by line as byte ranges of the mapped buffer. Nothing is decoded
+ * here, the lines go straight to CsvDrawParser.
+ */
+final class MappedCsvReader {
+
+    // Mapping window; a large archive is mapped in several windows
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+    // Receives one line as [from, to) of the buffer (without the line end),
+    // returns false to stop reading
+    interface LineHandler {
+        boolean line(ByteBuffer buffer, int from, int to) throws IOException;
+    }
+
+    private MappedCsvReader() {
+    }
+
+    // -------------------------------------------------------------------------
+    // Stream lines of the file
+    // -------------------------------------------------------------------------
+    static void forEachLine(Path path, LineHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+
+            while (position < size) {
+                long length = Math.min(MAP_WINDOW, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == size;
+
+                int consumed = forEachLine(buffer, (int) length, last, handler);
+                if (last || consumed < 0) {
+                    break;
+                }
+                if (consumed == 0) {
+                    throw new IOException("Line longer than " + MAP_WINDOW + " bytes in " + path);
+                }
+                // Next window starts at the unfinished line
+                position += consumed;
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Stream lines of an in-memory content (e.g. downloaded CSV)
+    // -------------------------------------------------------------------------
+    static void forEachLine(ByteBuffer buffer, LineHandler handler) throws IOException {
+        forEachLine(buffer, buffer.limit(), true, handler);
+    }
+
+    // CR, LF and CRLF are all line ends (like BufferedReader.readLine).
+    // Returns the start of the unfinished last line when it is not the last buffer,
+    // -1 if the handler stopped the reading.
+    private static int forEachLine(ByteBuffer buffer, int limit, boolean last, LineHandler handler)
+            throws IOException {
+        int lineStart = 0;
+        for (int i = 0; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                if (i > lineStart && !handler.line(buffer, lineStart, i)) {
+                    return -1;
+                }
+                lineStart = i + 1;
+            }
+        }
+        if (last && lineStart < limit) {
+            return handler.line(buffer, lineStart, limit) ? limit : -1;
+        }
+        return lineStart;
+    }
+}
@@ -0,0 +1,125 @@
+package karsaib.lotto;
+
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Timings and counters of the phases of one game's run: download (bytes),
+ * parse (rows and malformed lines), stats and report (bytes).
+ * Every phase is also a JFR event (PhaseEvent). The phases of a game run
+ * one after the other, possibly on different threads (all mode).
+ *
+ * --metrics prints the runs as JSON at the end:
+ *
+ * {"games": [{"game": "hatos", "phases": {"download": {"ms", "bytes", "rows",
+ *  "rejected", "bytesPerMs", "rowsPerSecond"}, "parse": {...}, ...}}]}
+ *
+ * Only the phases that ran are listed (e.g. no parse for an unchanged export).
+ */
+final class Metrics {
+
+    enum Phase {
+        DOWNLOAD, PARSE, STATS, REPORT;
+
+        String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    final Game game;
+    private final boolean[] ran = new boolean[Phase.values().length];
+    private final long[] nanos = new long[Phase.values().length];
+    private final long[] bytes = new long[Phase.values().length];
+    private final long[] rows = new long[Phase.values().length];
+    private final long[] rejected = new long[Phase.values().length];
+
+    Metrics(Game game) {
+        this.game = game;
+    }
+
+    Span start(Phase phase) {
+        return new Span(phase);
+    }
+
+    // One running phase; the counters are added to the phase when it ends
+    final class Span {
+
+        private final Phase phase;
+        private final PhaseEvent event = new PhaseEvent();
+        private final long start;
+
+        private Span(Phase phase) {
+            this.phase = phase;
+            event.begin();
+            this.start = System.nanoTime();
+        }
+
+        Span bytes(long count) {
+            event.bytes += count;
+            return this;
+        }
+
+        Span rows(long count) {
+            event.rows += count;
+            return this;
+        }
+
+        // Rows of a finished parser pass, with its malformed lines
+        Span parsed(long count, CsvDrawParser parser) {
+            event.rows += count;
+            event.rejected += parser.malformed();
+            return this;
+        }
+
+        void end() {
+            long elapsed = System.nanoTime() - start;
+            int i = phase.ordinal();
+            ran[i] = true;
+            nanos[i] += elapsed;
+            bytes[i] += event.bytes;
+            rows[i] += event.rows;
+            rejected[i] += event.rejected;
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.game = game.id;
+                event.phase = phase.key();
+                event.commit();
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // JSON summary of the runs
+    // -------------------------------------------------------------------------
+    static String toJson(List<Metrics> runs) {
+        StringBuilder out = new StringBuilder(256);
+        out.append("{\"games\":[");
+        for (int r = 0; r < runs.size(); r++) {
+            Metrics metrics = runs.get(r);
+            if (r > 0) out.append(',');
+            out.append("{\"game\":\"").append(metrics.game.id).append("\",\"phases\":{");
+            boolean first = true;
+            for (Phase phase : Phase.values()) {
+                int i = phase.ordinal();
+                if (!metrics.ran[i]) continue;
+                if (!first) out.append(',');
+                first = false;
+
+                double ms = metrics.nanos[i] / 1e6;
+                out.append('"').append(phase.key()).append("\":{\"ms\":");
+                Report.appendFixed(out, ms, 3);
+                out.append(",\"bytes\":").append(metrics.bytes[i])
+                        .append(",\"rows\":").append(metrics.rows[i])
+                        .append(",\"rejected\":").append(metrics.rejected[i])
+                        .append(",\"bytesPerMs\":");
+                Report.appendFixed(out, ms > 0 ? metrics.bytes[i] / ms : 0, 1);
+                out.append(",\"rowsPerSecond\":");
+                Report.appendFixed(out, ms > 0 ? metrics.rows[i] * 1000 / ms : 0, 1);
+                out.append('}');
+            }
+            out.append("}}");
+        }
+        return out.append("]}").toString();
+    }
+}
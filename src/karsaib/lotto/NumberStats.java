@@ -0,0 +1,198 @@
+package karsaib.lotto;
+
+import java.util.Arrays;
+
+/*
+ * Immutable per-number statistics of one history, consumed by the reports.
+ * Arrays are indexed by the number itself (index 0 is unused); a number that
+ * was never drawn has occurrences == 0 and is left out of the ranking.
+ */
+final class NumberStats {
+
+    final int maxNumber;
+    final int totalRows;
+    private final int[] lastDraw;
+
+    private final int[] occurrences;
+    private final int[] sinceLast;
+    private final int[] maxGap;
+    private final int[] gapCount;
+    private final double[] avgGap;
+    private final double[] cycleFactor;
+    private final double[] score;
+    // Drawn numbers ordered by score (highest first, ties by number)
+    private final int[] ranking;
+
+    private NumberStats(StatsAccumulator acc) {
+        this.maxNumber = acc.maxNumber;
+        this.totalRows = acc.rows();
+        this.lastDraw = acc.firstRow() == null ? new int[0] : acc.firstRow().clone();
+        this.occurrences = acc.occurrences.clone();
+        this.maxGap = acc.maxGap.clone();
+        this.gapCount = acc.gapCount.clone();
+        this.sinceLast = new int[maxNumber + 1];
+        this.avgGap = new double[maxNumber + 1];
+        this.cycleFactor = new double[maxNumber + 1];
+
+        cycles(acc, sinceLast, avgGap, cycleFactor);
+
+        this.score = calculateWeightedScore(occurrences, maxGap, sinceLast, cycleFactor);
+        this.ranking = rank(occurrences, score);
+    }
+
+    static NumberStats of(StatsAccumulator acc) {
+        return new NumberStats(acc);
+    }
+
+    // -------------------------------------------------------------------------
+    // Score (occurrences + maxGap + sinceLast + cycleFactor)
+    // -------------------------------------------------------------------------
+    // Normalized factors per number: occurrences, maxGap, sinceLast, cycleFactor
+    static final int FEATURES = 4;
+
+    private static double[] calculateWeightedScore(int[] occurrences, int[] maxGaps,
+                                                   int[] sinceLast, double[] cycleFactor) {
+        double[] scores = new double[occurrences.length];
+        double[] features = new double[occurrences.length * FEATURES];
+        if (!normalize(occurrences, maxGaps, sinceLast, cycleFactor, features, 0)) {
+            return scores;
+        }
+        for (int num = 1; num < occurrences.length; num++) {
+            if (occurrences[num] == 0) continue;
+            scores[num] = ScoreModel.DEFAULT.score(features, num * FEATURES);
+        }
+        return scores;
+    }
+
+    // Factors of the drawn numbers into out[offset + num * FEATURES ..], divided
+    // by their maximum (normalized occurrences > 0 exactly for the drawn numbers).
+    // Returns false if no number was drawn.
+    private static boolean normalize(int[] occurrences, int[] maxGaps, int[] sinceLast,
+                                     double[] cycleFactor, double[] out, int offset) {
+        boolean any = false;
+        int maxOcc = 0;
+        int maxGap = 0;
+        int maxSince = 0;
+        double maxCycle = 0.0;
+        for (int num = 1; num < occurrences.length; num++) {
+            if (occurrences[num] == 0) continue;
+            if (!any) {
+                maxSince = sinceLast[num];
+                maxCycle = cycleFactor[num];
+                any = true;
+            }
+            maxOcc = Math.max(maxOcc, occurrences[num]);
+            maxGap = Math.max(maxGap, maxGaps[num]);
+            maxSince = Math.max(maxSince, sinceLast[num]);
+            maxCycle = Math.max(maxCycle, cycleFactor[num]);
+        }
+        if (!any) {
+            return false;
+        }
+        // A number drawn only once has no max gap
+        if (maxGap == 0) maxGap = 1;
+
+        for (int num = 1; num < occurrences.length; num++) {
+            if (occurrences[num] == 0) continue;
+
+            int i = offset + num * FEATURES;
+            out[i] = (double) occurrences[num] / maxOcc;
+            out[i + 1] = (double) maxGaps[num] / maxGap;
+            out[i + 2] = (double) sinceLast[num] / maxSince;
+            out[i + 3] = cycleFactor[num] / maxCycle;
+        }
+        return true;
+    }
+
+    // Score factors of an accumulator's history into out (FEATURES per number,
+    // see normalize), without building the statistics: the backtest walk
+    // needs them for every draw. sinceLast, avgGap and cycleFactor are scratch
+    // arrays of maxNumber + 1.
+    static boolean features(StatsAccumulator acc, int[] sinceLast, double[] avgGap, double[] cycleFactor,
+                            double[] out, int offset) {
+        cycles(acc, sinceLast, avgGap, cycleFactor);
+        return normalize(acc.occurrences, acc.maxGap, sinceLast, cycleFactor, out, offset);
+    }
+
+    // sinceLast, avgGap and cycleFactor of the drawn numbers
+    private static void cycles(StatsAccumulator acc, int[] sinceLast, double[] avgGap, double[] cycleFactor) {
+        int totalRows = acc.rows();
+        for (int num = 1; num <= acc.maxNumber; num++) {
+            if (acc.occurrences[num] == 0) continue;
+
+            // Since last draw
+            int latestRow = acc.latestRow(num);
+            sinceLast[num] = latestRow < 0 ? totalRows : latestRow;
+
+            // cycleFactor = sinceLast / avgGap
+            double avg;
+            if (acc.gapCount[num] > 0) {
+                avg = (double) acc.gapSum[num] / acc.gapCount[num];
+                avgGap[num] = avg;
+            } else {
+                avg = totalRows;
+            }
+            cycleFactor[num] = (avg <= 0.0) ? 0.0 : sinceLast[num] / avg;
+        }
+    }
+
+    // Stable insertion sort, at most 90 numbers
+    private static int[] rank(int[] occurrences, double[] score) {
+        int count = 0;
+        int[] order = new int[occurrences.length - 1];
+        for (int num = 1; num < occurrences.length; num++) {
+            if (occurrences[num] == 0) continue;
+            int i = count++;
+            while (i > 0 && score[order[i - 1]] < score[num]) {
+                order[i] = order[i - 1];
+                i--;
+            }
+            order[i] = num;
+        }
+        return Arrays.copyOf(order, count);
+    }
+
+    // -------------------------------------------------------------------------
+    // Accessors
+    // -------------------------------------------------------------------------
+    int[] lastDraw() {
+        return lastDraw.clone();
+    }
+
+    int[] ranking() {
+        return ranking.clone();
+    }
+
+    boolean drawn(int num) {
+        return occurrences[num] > 0;
+    }
+
+    int occurrences(int num) {
+        return occurrences[num];
+    }
+
+    int sinceLast(int num) {
+        return sinceLast[num];
+    }
+
+    int maxGap(int num) {
+        return maxGap[num];
+    }
+
+    // Only numbers drawn at least twice have a gap
+    boolean hasGap(int num) {
+        return gapCount[num] > 0;
+    }
+
+    double avgGap(int num) {
+        return avgGap[num];
+    }
+
+    double cycleFactor(int num) {
+        return cycleFactor[num];
+    }
+
+    double score(int num) {
+        return score[num];
+    }
+}
@@ -0,0 +1,180 @@
+package karsaib.lotto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * Statistics of the draw store per month, per year and per weekday, with the
+ * same figures as the whole history (occurrences, gaps, scores via
+ * NumberStats), each measured inside its partition.
+ *
+ * The months (runs of draws of the same year and month, by WindowIndex.key for
+ * the old draws without a date) are computed in parallel on the fork-join
+ * pool and joined with StatsAccumulator.acceptOlder on the way up; a year is
+ * the join of its months, the global result the join of every month, which
+ * is the same state as DrawStore.stats(). Weekday partitions interleave, so
+ * they are collected in one pass of their own (draws without a weekday are
+ * left out) and do not add up to the global gaps.
+ */
+final class PartitionStats {
+
+    private static final String[] DAYS = {"Hétfő", "Kedd", "Szerda", "Csütörtök", "Péntek", "Szombat",
+            "Vasárnap"};
+
+    final int maxNumber;
+    // Month run i: draws [runStart[i], runStart[i + 1]), oldest first
+    private final int[] runStart;
+    private final int[] runYear;
+    private final int[] runMonth;
+    private final StatsAccumulator[] months;
+    private final StatsAccumulator global;
+    // Years ascending
+    private final int[] yearList;
+    private final StatsAccumulator[] years;
+    // 1 = Monday .. 7 = Sunday, index 0 unused
+    private final StatsAccumulator[] weekdays = new StatsAccumulator[8];
+
+    private PartitionStats(DrawStore store) {
+        this.maxNumber = store.maxNumber;
+        int size = store.size();
+
+        List<Integer> starts = new ArrayList<>();
+        int[] year = new int[size];
+        int[] month = new int[size];
+        for (int i = 0; i < size; i++) {
+            year[i] = store.year(i);
+            month[i] = WindowIndex.key(store.date(i), store.year(i), store.week(i), store.weekday(i)) / 100 % 100;
+            if (i == 0 || year[i] != year[i - 1] || month[i] != month[i - 1]) {
+                starts.add(i);
+            }
+        }
+        int runs = starts.size();
+        this.runStart = new int[runs + 1];
+        this.runYear = new int[runs];
+        this.runMonth = new int[runs];
+        for (int r = 0; r < runs; r++) {
+            runStart[r] = starts.get(r);
+            runYear[r] = year[runStart[r]];
+            runMonth[r] = month[runStart[r]];
+        }
+        runStart[runs] = size;
+        this.months = new StatsAccumulator[runs];
+
+        Months all = new Months(store, 0, runs);
+        all.fork();
+        // Newest first, as the months
+        for (int day = 1; day <= 7; day++) {
+            weekdays[day] = new StatsAccumulator(maxNumber);
+        }
+        int[] row = new int[store.numbersPerRow];
+        for (int i = size - 1; i >= 0; i--) {
+            int day = store.weekday(i);
+            if (day < 1 || day > 7) continue;
+            int count = store.numbers(i, row);
+            weekdays[day].accept(count == row.length ? row : Arrays.copyOf(row, count));
+        }
+        this.global = all.join();
+
+        // Years: the join of their months, newest first. A year's runs are
+        // usually consecutive; if not (the year column went back), its draws
+        // are still joined as one sequence, like a weekday.
+        this.yearList = Arrays.stream(runYear).distinct().sorted().toArray();
+        this.years = new StatsAccumulator[yearList.length];
+        for (int y = 0; y < yearList.length; y++) {
+            years[y] = new StatsAccumulator(maxNumber);
+        }
+        for (int r = runs - 1; r >= 0; r--) {
+            years[Arrays.binarySearch(yearList, runYear[r])].acceptOlder(months[r]);
+        }
+    }
+
+    static PartitionStats of(DrawStore store) {
+        return new PartitionStats(store);
+    }
+
+    // -------------------------------------------------------------------------
+    // Partitions as report windows
+    // -------------------------------------------------------------------------
+    // The whole store, joined from the months
+    StatsAccumulator global() {
+        return global;
+    }
+
+    // Statistics of the last count years, oldest first, labelled by the year
+    List<Report.Window> lastYears(int count) {
+        List<Report.Window> windows = new ArrayList<>();
+        for (int y = Math.max(0, yearList.length - count); y < yearList.length; y++) {
+            windows.add(new Report.Window(String.valueOf(yearList[y]), NumberStats.of(years[y])));
+        }
+        return windows;
+    }
+
+    // Statistics of the last count months, oldest first, labelled yyyy.mm
+    List<Report.Window> lastMonths(int count) {
+        List<Report.Window> windows = new ArrayList<>();
+        for (int m = Math.max(0, months.length - count); m < months.length; m++) {
+            String label = runYear[m] + (runMonth[m] < 10 ? ".0" : ".") + runMonth[m];
+            windows.add(new Report.Window(label, NumberStats.of(months[m])));
+        }
+        return windows;
+    }
+
+    // Statistics of the weekdays with a draw, Monday first
+    List<Report.Window> weekdays() {
+        List<Report.Window> windows = new ArrayList<>();
+        for (int day = 1; day <= 7; day++) {
+            if (weekdays[day].rows() > 0) {
+                windows.add(new Report.Window(DAYS[day - 1], NumberStats.of(weekdays[day])));
+            }
+        }
+        return windows;
+    }
+
+    // Draws [from, to) of the store, newest first
+    private static StatsAccumulator accumulate(DrawStore store, int from, int to) {
+        StatsAccumulator acc = new StatsAccumulator(store.maxNumber);
+        int[] row = new int[store.numbersPerRow];
+        for (int i = to - 1; i >= from; i--) {
+            int count = store.numbers(i, row);
+            // Same rows as DrawStore.stats()
+            acc.accept(count == row.length ? row : Arrays.copyOf(row, count));
+        }
+        return acc;
+    }
+
+    // -------------------------------------------------------------------------
+    // Month runs [from, to): each leaf keeps its month, the joined copy goes up
+    // -------------------------------------------------------------------------
+    @SuppressWarnings("serial")
+    private final class Months extends RecursiveTask<StatsAccumulator> {
+
+        private final DrawStore store;
+        private final int from;
+        private final int to;
+
+        Months(DrawStore store, int from, int to) {
+            this.store = store;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected StatsAccumulator compute() {
+            if (to - from == 0) {
+                return new StatsAccumulator(maxNumber);
+            }
+            if (to - from == 1) {
+                months[from] = accumulate(store, runStart[from], runStart[from + 1]);
+                return months[from].copy();
+            }
+            int mid = (from + to) >>> 1;
+            Months older = new Months(store, from, mid);
+            older.fork();
+            StatsAccumulator newer = new Months(store, mid, to).compute();
+            newer.acceptOlder(older.join());
+            return newer;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package karsaib.lotto;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+ * JFR event of one phase of a game's run (see Metrics), e.g.
+ * java -XX:StartFlightRecording=filename=lotto.jfr -jar lotto-1.jar 6
+ * jfr print --events karsaib.lotto.Phase lotto.jfr
+ */
+@Name("karsaib.lotto.Phase")
+@Label("Lotto Phase")
+@Category("Lotto")
+@Description("Download, parse, stats or report phase of a game")
+@StackTrace(false)
+final class PhaseEvent extends Event {
+
+    @Label("Game")
+    String game;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Rejected Rows")
+    @Description("Lines that do not fit the column plan of the file")
+    long rejected;
+}
@@ -0,0 +1,169 @@
+package karsaib.lotto;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/*
+ * Prize report (prizes.html) of a PrizeTable:
+ *
+ *  - jackpot rollovers: draws without a top tier winner in a row, the longest
+ *    and the current run, and the last JACKPOTS draws the top tier was won
+ *    with the rollovers before them;
+ *  - payout trend per tier: average payout per winner (draws with a winner of
+ *    the tier) and average winners per draw, year by year.
+ *
+ * Old draws exported without prizes are left out.
+ */
+final class PrizeReport {
+
+    // Jackpot wins listed, newest first
+    static final int JACKPOTS = 30;
+
+    private PrizeReport() {
+    }
+
+    static void write(PrizeTable table, Writer writer) throws IOException {
+        writer.write("<html><head>");
+        writer.write("<meta charset=\"UTF-8\">");
+        writer.write("<title>Lottó nyeremények</title>");
+        writer.write("<style>");
+        writer.write("body { font-family: Arial, sans-serif; }");
+        writer.write("table { border-collapse: collapse; margin-top: 16px; }");
+        writer.write("th, td { border: 1px solid #ccc; padding: 4px 8px; text-align: right; }");
+        writer.write("th { background-color: #f0f0f0; }");
+        writer.write("td:first-child, th:first-child { text-align: center; }");
+        writer.write("</style>");
+        writer.write("</head><body>");
+        writer.write("<h1>Lottó nyeremények</h1>");
+
+        writeRollovers(writer, table);
+        writeTrend(writer, table);
+
+        writer.write("</body></html>");
+    }
+
+    // -------------------------------------------------------------------------
+    // Jackpot rollovers (top tier winners and payouts only)
+    // -------------------------------------------------------------------------
+    private static void writeRollovers(Writer writer, PrizeTable table) throws IOException {
+        int size = table.size();
+        int[] topWinners = table.winners(0);
+        // Rollovers before draw i, for the draws the jackpot was won
+        int[] before = new int[size];
+        int draws = 0;
+        int wins = 0;
+        int run = 0;
+        int longest = 0;
+        int longestEnd = -1;
+        int last = -1;
+        for (int i = 0; i < size; i++) {
+            if (!table.hasPrizes(i)) continue;
+            draws++;
+            last = i;
+            if (topWinners[i] > 0) {
+                before[i] = run;
+                wins++;
+                run = 0;
+            } else if (++run > longest) {
+                longest = run;
+                longestEnd = i;
+            }
+        }
+
+        writer.write("<h2>Főnyeremény halmozódás</h2>");
+        writer.write("<p>Draws with prizes: " + draws + ", top tier (" + table.game.tiers.get(0)
+                + " találat) won: " + wins + ", current rollover: " + run + " draws");
+        if (longest > 0) {
+            writer.write(", longest rollover: " + longest + " draws (until " + label(table, longestEnd) + ")");
+        }
+        writer.write("</p>");
+
+        writer.write("<table>");
+        writer.write("<thead><tr>"
+                + "<th>Húzás</th>"
+                + "<th>Halmozódás előtte</th>"
+                + "<th>Nyertesek</th>"
+                + "<th>Nyeremény</th>"
+                + "</tr></thead>");
+        writer.write("<tbody>");
+        int listed = 0;
+        for (int i = last; i >= 0 && listed < JACKPOTS; i--) {
+            if (topWinners[i] == 0 || !table.hasPrizes(i)) continue;
+            listed++;
+            writer.write("<tr><td>" + label(table, i) + "</td><td>" + before[i] + "</td><td>" + topWinners[i]
+                    + "</td><td>" + amount(table.payout(0, i)) + "</td></tr>");
+        }
+        writer.write("</tbody></table>");
+    }
+
+    // -------------------------------------------------------------------------
+    // Average payout and winners per tier, year by year
+    // -------------------------------------------------------------------------
+    private static void writeTrend(Writer writer, PrizeTable table) throws IOException {
+        int tiers = table.tiers;
+        writer.write("<h2>Nyeremények évenként</h2>");
+        writer.write("<table>");
+        writer.write("<thead><tr><th rowspan='2'>Év</th><th rowspan='2'>Húzások</th>");
+        for (int tier = 0; tier < tiers; tier++) {
+            writer.write("<th colspan='2'>" + table.game.tiers.get(tier) + " találat</th>");
+        }
+        writer.write("</tr><tr>");
+        for (int tier = 0; tier < tiers; tier++) {
+            writer.write("<th>Átlag nyeremény</th><th>Átlag nyertes</th>");
+        }
+        writer.write("</tr></thead>");
+        writer.write("<tbody>");
+
+        long[] payoutSum = new long[tiers];
+        int[] paidDraws = new int[tiers];
+        long[] winnerSum = new long[tiers];
+        StringBuilder row = new StringBuilder(256);
+        // Newest year first
+        int i = table.size() - 1;
+        while (i >= 0) {
+            int year = table.year(i);
+            int draws = 0;
+            Arrays.fill(payoutSum, 0);
+            Arrays.fill(paidDraws, 0);
+            Arrays.fill(winnerSum, 0);
+            for (; i >= 0 && table.year(i) == year; i--) {
+                if (!table.hasPrizes(i)) continue;
+                draws++;
+                for (int tier = 0; tier < tiers; tier++) {
+                    int winners = table.winners(tier, i);
+                    winnerSum[tier] += winners;
+                    if (winners > 0) {
+                        payoutSum[tier] += table.payout(tier, i);
+                        paidDraws[tier]++;
+                    }
+                }
+            }
+            if (draws == 0) continue;
+
+            row.setLength(0);
+            row.append("<tr><td>").append(year).append("</td><td>").append(draws).append("</td>");
+            for (int tier = 0; tier < tiers; tier++) {
+                row.append("<td>").append(paidDraws[tier] == 0 ? "-" : amount(payoutSum[tier] / paidDraws[tier]))
+                        .append("</td><td>");
+                Report.appendFixed(row, (double) winnerSum[tier] / draws, 1).append("</td>");
+            }
+            writer.append(row.append("</tr>"));
+        }
+        writer.write("</tbody></table>");
+    }
+
+    // year/week and the date if the draw has one
+    private static String label(PrizeTable table, int i) {
+        int date = table.date(i);
+        String label = table.year(i) + "/" + table.week(i);
+        return date == 0 ? label
+                : label + String.format(Locale.ROOT, " %d.%02d.%02d.", date / 10000, date / 100 % 100, date % 100);
+    }
+
+    // 359455 -> "359 455 Ft"
+    private static String amount(long value) {
+        return String.format(Locale.US, "%,d", value).replace(',', ' ') + " Ft";
+    }
+}
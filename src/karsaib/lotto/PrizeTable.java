@@ -0,0 +1,183 @@
+package karsaib.lotto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/*
+ * Prize columns of a draw history export as primitive columns: per tier the
+ * winner counts (int) and the payouts (long, "359 455 Ft" -> 359455), with
+ * the year, week and date of every draw. Index 0 is the oldest draw, as in
+ * DrawStore.
+ *
+ * Reading the table only runs CsvDrawParser over the content (the draw lines
+ * and their keys) and keeps the line bounds; a prize column is decoded from
+ * the kept bytes when it is first asked for, so a query that touches two
+ * columns decodes two. CsvDrawParser itself never looks at the prize fields.
+ * Not thread-safe (the columns are filled on first use).
+ */
+final class PrizeTable {
+
+    final Game game;
+    final int tiers;
+    private final byte[] content;
+    private final byte separator;
+    private final int firstPrize;
+
+    private int size;
+    private int[] lineFrom = new int[1024];
+    private int[] lineTo = new int[1024];
+    private int[] year = new int[1024];
+    private int[] week = new int[1024];
+    private int[] date = new int[1024];
+
+    // Decoded on first use, null until then
+    private final int[][] winners;
+    private final long[][] payouts;
+
+    private PrizeTable(Game game, byte[] content) throws IOException {
+        this.game = game;
+        this.content = content;
+
+        CsvDrawParser parser = new CsvDrawParser(game);
+        MappedCsvReader.forEachLine(ByteBuffer.wrap(content), (buffer, from, to) -> {
+            if (parser.parseLine(buffer, from, to)) {
+                add(from, to, parser.key());
+            }
+            return true;
+        });
+        if (size == 0) {
+            throw new IOException("Error.CSV format issue");
+        }
+        this.separator = parser.separator();
+        this.firstPrize = parser.plan().firstPrize();
+        this.tiers = Math.min(game.tiers.size(), parser.plan().prizeTiers());
+        this.winners = new int[tiers][];
+        this.payouts = new long[tiers][];
+
+        // Oldest first
+        reverse(lineFrom);
+        reverse(lineTo);
+        reverse(year);
+        reverse(week);
+        reverse(date);
+    }
+
+    static PrizeTable read(Path csvFile, Game game) throws IOException {
+        return new PrizeTable(game, Files.readAllBytes(csvFile));
+    }
+
+    private void add(int from, int to, DrawKey key) {
+        if (size == lineFrom.length) {
+            lineFrom = Arrays.copyOf(lineFrom, size * 2);
+            lineTo = Arrays.copyOf(lineTo, size * 2);
+            year = Arrays.copyOf(year, size * 2);
+            week = Arrays.copyOf(week, size * 2);
+            date = Arrays.copyOf(date, size * 2);
+        }
+        lineFrom[size] = from;
+        lineTo[size] = to;
+        year[size] = key.year();
+        week[size] = key.week();
+        date[size] = key.date();
+        size++;
+    }
+
+    private void reverse(int[] column) {
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            int t = column[i];
+            column[i] = column[j];
+            column[j] = t;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Draws, index 0 is the oldest
+    // -------------------------------------------------------------------------
+    int size() {
+        return size;
+    }
+
+    int year(int i) {
+        return year[i];
+    }
+
+    int week(int i) {
+        return week[i];
+    }
+
+    // yyyymmdd, 0 if the draw has no date
+    int date(int i) {
+        return date[i];
+    }
+
+    // -------------------------------------------------------------------------
+    // Prize columns, tier 0 is the top tier (game.tiers)
+    // -------------------------------------------------------------------------
+    int winners(int tier, int i) {
+        return winners(tier)[i];
+    }
+
+    long payout(int tier, int i) {
+        return payouts(tier)[i];
+    }
+
+    int[] winners(int tier) {
+        if (winners[tier] == null) {
+            int[] column = new int[size];
+            for (int i = 0; i < size; i++) {
+                column[i] = (int) Math.min(Integer.MAX_VALUE, decode(i, firstPrize + 2 * tier));
+            }
+            winners[tier] = column;
+        }
+        return winners[tier];
+    }
+
+    long[] payouts(int tier) {
+        if (payouts[tier] == null) {
+            long[] column = new long[size];
+            for (int i = 0; i < size; i++) {
+                column[i] = decode(i, firstPrize + 2 * tier + 1);
+            }
+            payouts[tier] = column;
+        }
+        return payouts[tier];
+    }
+
+    // False for the old draws exported without prizes (every field is 0); a
+    // draw with prizes always has winners of the lowest tier
+    boolean hasPrizes(int i) {
+        return tiers > 0 && winners(tiers - 1, i) > 0;
+    }
+
+    // Columns decoded so far
+    int decodedColumns() {
+        int count = 0;
+        for (int tier = 0; tier < tiers; tier++) {
+            count += (winners[tier] != null ? 1 : 0) + (payouts[tier] != null ? 1 : 0);
+        }
+        return count;
+    }
+
+    // Digits of field f of the draw line, everything else (thousand spaces,
+    // "Ft") skipped; 0 if the field is empty or missing
+    private long decode(int i, int field) {
+        int at = lineFrom[i];
+        int to = lineTo[i];
+        for (int f = 0; f < field && at < to; at++) {
+            if (content[at] == separator) {
+                f++;
+            }
+        }
+        long value = 0;
+        for (; at < to && content[at] != separator; at++) {
+            byte b = content[at];
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+            }
+        }
+        return value;
+    }
+}
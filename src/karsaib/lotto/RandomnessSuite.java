@@ -0,0 +1,329 @@
+package karsaib.lotto;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * Randomness tests of a draw history, with Monte Carlo p-values. Every
+ * drawing (each half of a Skandi row counts separately) should be a uniform
+ * random k-subset of 1..m, independent of the others. Three chi-square
+ * statistics are measured on the history:
+ *
+ *  - occurrences: per number against N k / m;
+ *  - gaps: the gaps between consecutive occurrences of a number (in drawings,
+ *    as StatsAccumulator counts them) binned 1, 2, .. BINS - 1, >= BINS
+ *    against the geometric distribution of p = k / m;
+ *  - pairs: the count of every pair drawn together against
+ *    N k (k - 1) / (m (m - 1)), independence of the numbers.
+ *
+ * The same statistics are computed on simulated histories of N uniform
+ * drawings; the p-value of a test is the share of the simulations with a
+ * statistic at least as large as the history's ((1 + hits) / (1 + runs)).
+ *
+ * The simulations run on the fork-join pool in chunks; every chunk has its
+ * own SplittableRandom, split in chunk order from one seeded root (the result
+ * does not depend on the threads), and its own scratch arrays. A drawing is a
+ * partial Fisher-Yates shuffle of a reused pool, so the sampling allocates
+ * nothing. The sums of squares of the counts are kept up to date while
+ * counting (x -> x + 1 adds 2x + 1), so a statistic costs O(1) for the
+ * occurrences and the pairs, O(BINS) for the gaps.
+ */
+final class RandomnessSuite {
+
+    static final int OCCURRENCES = 0;
+    static final int GAPS = 1;
+    static final int PAIRS = 2;
+    static final int TESTS = 3;
+
+    // Simulated histories per leaf task
+    private static final int CHUNK = 256;
+
+    final int maxNumber;
+    final int numbersPerDraw;
+    // Drawings of the history, drawing j at j * numbersPerDraw
+    private final int[] history;
+    private final int drawings;
+    // Gap bins: 1 .. bins - 1 and the tail >= bins
+    private final int bins;
+    private final double[] gapProbability;
+
+    private final double[] observed = new double[TESTS];
+    private int runs;
+    private final long[] exceeded = new long[TESTS];
+    private final double[] simulatedSum = new double[TESTS];
+
+    private RandomnessSuite(DrawStore store) {
+        this.maxNumber = store.maxNumber;
+        this.numbersPerDraw = store.numbersPerDraw;
+        int perRow = store.numbersPerRow / store.numbersPerDraw;
+
+        // Drawings of exactly numbersPerDraw numbers only: a bad old row may
+        // have lost a repeated number (fewer bits) or have more numbers than
+        // the game draws (more bits); either is skipped
+        int[] numbers = new int[store.size() * perRow * numbersPerDraw];
+        int count = 0;
+        for (int i = 0; i < store.size(); i++) {
+            for (int d = 0; d < perRow; d++) {
+                int bits = 0;
+                for (int w = 0; w < store.wordsPerDraw; w++) {
+                    bits += Long.bitCount(store.word(i, d * store.wordsPerDraw + w));
+                }
+                if (bits != numbersPerDraw) continue;
+                int at = count++ * numbersPerDraw;
+                for (int w = 0; w < store.wordsPerDraw; w++) {
+                    for (long word = store.word(i, d * store.wordsPerDraw + w); word != 0; word &= word - 1) {
+                        numbers[at++] = w * Long.SIZE + Long.numberOfTrailingZeros(word) + 1;
+                    }
+                }
+            }
+        }
+        this.drawings = count;
+        this.history = Arrays.copyOf(numbers, count * numbersPerDraw);
+
+        double p = (double) numbersPerDraw / maxNumber;
+        this.bins = Math.max(2, (int) Math.ceil(3 / p));
+        this.gapProbability = new double[bins + 1];
+        for (int g = 1; g < bins; g++) {
+            gapProbability[g] = Math.pow(1 - p, g - 1) * p;
+        }
+        gapProbability[bins] = Math.pow(1 - p, bins - 1);
+
+        Scratch scratch = new Scratch();
+        scratch.reset();
+        for (int j = 0; j < drawings; j++) {
+            System.arraycopy(history, j * numbersPerDraw, scratch.drawing, 0, numbersPerDraw);
+            scratch.add(scratch.drawing);
+        }
+        scratch.statistics(observed);
+    }
+
+    static RandomnessSuite of(DrawStore store) {
+        return new RandomnessSuite(store);
+    }
+
+    // -------------------------------------------------------------------------
+    // Simulate runs histories (seeded, reproducible)
+    // -------------------------------------------------------------------------
+    RandomnessSuite simulate(int runs, long seed) {
+        SplittableRandom root = new SplittableRandom(seed);
+        int chunks = (runs + CHUNK - 1) / CHUNK;
+        SplittableRandom[] randoms = new SplittableRandom[chunks];
+        for (int c = 0; c < chunks; c++) {
+            randoms[c] = root.split();
+        }
+        double[] result = ForkJoinPool.commonPool().invoke(new Simulation(randoms, runs, 0, chunks));
+        this.runs = runs;
+        for (int t = 0; t < TESTS; t++) {
+            exceeded[t] = (long) result[t];
+            simulatedSum[t] = result[TESTS + t];
+        }
+        return this;
+    }
+
+    // -------------------------------------------------------------------------
+    // Results
+    // -------------------------------------------------------------------------
+    int drawings() {
+        return drawings;
+    }
+
+    int runs() {
+        return runs;
+    }
+
+    // Degrees of freedom of the chi-square tests (for reference)
+    int degreesOfFreedom(int test) {
+        return switch (test) {
+            case OCCURRENCES -> maxNumber - 1;
+            case GAPS -> bins - 1;
+            default -> maxNumber * (maxNumber - 1) / 2 - 1;
+        };
+    }
+
+    double statistic(int test) {
+        return observed[test];
+    }
+
+    double simulatedMean(int test) {
+        return runs == 0 ? Double.NaN : simulatedSum[test] / runs;
+    }
+
+    double pValue(int test) {
+        return (1.0 + exceeded[test]) / (1.0 + runs);
+    }
+
+    // -------------------------------------------------------------------------
+    // Counters of one history, reused for every simulated history of a chunk
+    // -------------------------------------------------------------------------
+    private final class Scratch {
+
+        final int stride = maxNumber + 1;
+        final int[] counts = new int[stride];
+        // Drawing index of the last occurrence, -1 if none yet
+        final int[] last = new int[stride];
+        final long[] gapCounts = new long[bins + 1];
+        // Pair a < b at a * stride + b
+        final int[] pairs = new int[stride * stride];
+        final int[] pool = new int[maxNumber];
+        final int[] drawing = new int[numbersPerDraw];
+        int index;
+        long gaps;
+        // Sums of the squared counts
+        long countSquares;
+        long pairSquares;
+
+        Scratch() {
+            for (int i = 0; i < maxNumber; i++) {
+                pool[i] = i + 1;
+            }
+        }
+
+        void reset() {
+            Arrays.fill(counts, 0);
+            Arrays.fill(last, -1);
+            Arrays.fill(gapCounts, 0);
+            Arrays.fill(pairs, 0);
+            index = 0;
+            gaps = 0;
+            countSquares = 0;
+            pairSquares = 0;
+        }
+
+        void add(int[] numbers) {
+            for (int j = 0; j < numbersPerDraw; j++) {
+                int a = numbers[j];
+                countSquares += 2L * counts[a]++ + 1;
+                if (last[a] >= 0) {
+                    gapCounts[Math.min(index - last[a], bins)]++;
+                    gaps++;
+                }
+                last[a] = index;
+                for (int l = 0; l < j; l++) {
+                    int b = numbers[l];
+                    pairSquares += 2L * pairs[a < b ? a * stride + b : b * stride + a]++ + 1;
+                }
+            }
+            index++;
+        }
+
+        // A simulated history of the given drawings: uniform k-subsets by a
+        // partial shuffle of the pool (it stays a permutation), counted as add()
+        void simulate(SplittableRandom random, int drawings) {
+            int k = numbersPerDraw;
+            int m = maxNumber;
+            int tail = bins;
+            int[] counts = this.counts;
+            int[] last = this.last;
+            long[] gapCounts = this.gapCounts;
+            int[] pairs = this.pairs;
+            int[] pool = this.pool;
+            int[] drawing = this.drawing;
+            long gaps = 0;
+            long countSquares = 0;
+            long pairSquares = 0;
+            for (int index = 0; index < drawings; index++) {
+                for (int j = 0; j < k; j++) {
+                    int r = j + random.nextInt(m - j);
+                    int a = pool[r];
+                    pool[r] = pool[j];
+                    pool[j] = a;
+                    drawing[j] = a;
+
+                    countSquares += 2L * counts[a]++ + 1;
+                    int previous = last[a];
+                    if (previous >= 0) {
+                        gapCounts[Math.min(index - previous, tail)]++;
+                        gaps++;
+                    }
+                    last[a] = index;
+                    for (int l = 0; l < j; l++) {
+                        int b = drawing[l];
+                        pairSquares += 2L * pairs[a < b ? a * stride + b : b * stride + a]++ + 1;
+                    }
+                }
+            }
+            this.index = drawings;
+            this.gaps = gaps;
+            this.countSquares = countSquares;
+            this.pairSquares = pairSquares;
+        }
+
+        // Chi-square statistics of the counted history into out
+        void statistics(double[] out) {
+            // sum (x - e)^2 / e = (sum x^2 - 2 e sum x + cells e^2) / e, sum x = cells e
+            double expected = (double) index * numbersPerDraw / maxNumber;
+            out[OCCURRENCES] = expected > 0 ? countSquares / expected - (double) index * numbersPerDraw : 0;
+
+            double gap = 0;
+            for (int g = 1; g <= bins; g++) {
+                double e = gaps * gapProbability[g];
+                if (e > 0) {
+                    double d = gapCounts[g] - e;
+                    gap += d * d / e;
+                }
+            }
+            out[GAPS] = gap;
+
+            double pairTotal = (double) index * numbersPerDraw * (numbersPerDraw - 1) / 2;
+            double pairExpected = pairTotal / ((double) maxNumber * (maxNumber - 1) / 2);
+            out[PAIRS] = pairExpected > 0 ? pairSquares / pairExpected - pairTotal : 0;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Chunks [from, to) of the simulations; result: exceed counts, then the
+    // sums of the simulated statistics
+    // -------------------------------------------------------------------------
+    @SuppressWarnings("serial")
+    private final class Simulation extends RecursiveTask<double[]> {
+
+        private final SplittableRandom[] randoms;
+        private final int runs;
+        private final int from;
+        private final int to;
+
+        Simulation(SplittableRandom[] randoms, int runs, int from, int to) {
+            this.randoms = randoms;
+            this.runs = runs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                Simulation right = new Simulation(randoms, runs, mid, to);
+                right.fork();
+                double[] left = new Simulation(randoms, runs, from, mid).compute();
+                double[] other = right.join();
+                for (int i = 0; i < left.length; i++) {
+                    left[i] += other[i];
+                }
+                return left;
+            }
+            double[] result = new double[2 * TESTS];
+            if (from == to) {
+                return result;
+            }
+            SplittableRandom random = randoms[from];
+            Scratch scratch = new Scratch();
+            double[] statistics = new double[TESTS];
+            int count = Math.min(CHUNK, runs - from * CHUNK);
+            for (int r = 0; r < count; r++) {
+                scratch.reset();
+                scratch.simulate(random, drawings);
+                scratch.statistics(statistics);
+                for (int t = 0; t < TESTS; t++) {
+                    if (statistics[t] >= observed[t]) {
+                        result[t]++;
+                    }
+                    result[TESTS + t] += statistics[t];
+                }
+            }
+            return result;
+        }
+    }
+}
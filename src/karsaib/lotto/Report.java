@@ -0,0 +1,70 @@
+package karsaib.lotto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/*
+ * Content of one report: the statistics of the history, the pair (and triple)
+ * co-occurrences if they were computed, the windows to compare, and the last
+ * years and months (oldest first) and the weekdays of the draw store (see
+ * PartitionStats). How it is written is up to the ReportSink of the output
+ * format.
+ */
+record Report(Game game, NumberStats stats, CoOccurrence pairs, List<Window> windows, List<Window> years,
+              List<Window> months, List<Window> weekdays) {
+
+    // Rows of the pair / triple tables
+    static final int TOP_COMBINATIONS = 20;
+    // Years of the year-over-year comparison, months of the month table
+    static final int YEARS = 5;
+    static final int MONTHS = 12;
+
+    // A window of the history with its statistics
+    record Window(String label, NumberStats stats) {
+    }
+
+    // -------------------------------------------------------------------------
+    // Fixed-point number with the given decimals, same digits as
+    // String.format(Locale.US, "%.Nf") (half-up on the shortest decimal form)
+    // -------------------------------------------------------------------------
+    private static final long[] SCALE = {1, 10, 100, 1000, 10000, 100000, 1000000};
+    // Below this many units the error of the scaled double (and its distance
+    // from the shortest decimal form) stays far inside the tie window; larger
+    // values are rounded on the decimal form
+    private static final double EXACT_UNITS = 1e9;
+
+    static StringBuilder appendFixed(StringBuilder out, double value, int decimals) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return out.append(value);
+        }
+        long scale = SCALE[decimals];
+        double scaled = Math.abs(value) * scale;
+        if (scaled >= EXACT_UNITS) {
+            return out.append(BigDecimal.valueOf(value).setScale(decimals, RoundingMode.HALF_UP).toPlainString());
+        }
+        double floor = Math.floor(scaled);
+        long units;
+        if (Math.abs(scaled - floor - 0.5) < 1e-6) {
+            // Close to a tie, the product may be rounded: decide on the decimal form
+            units = BigDecimal.valueOf(Math.abs(value)).setScale(decimals, RoundingMode.HALF_UP)
+                    .unscaledValue().longValueExact();
+        } else {
+            units = (long) floor + (scaled - floor > 0.5 ? 1 : 0);
+        }
+
+        if (value < 0 || (value == 0 && 1 / value < 0)) {
+            out.append('-');
+        }
+        out.append(units / scale);
+        if (decimals > 0) {
+            out.append('.');
+            String fraction = Long.toString(units % scale);
+            for (int i = fraction.length(); i < decimals; i++) {
+                out.append('0');
+            }
+            out.append(fraction);
+        }
+        return out;
+    }
+}
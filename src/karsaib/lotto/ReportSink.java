@@ -0,0 +1,33 @@
+package karsaib.lotto;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/*
+ * Output format of the report. A sink streams the report to the writer;
+ * write errors are thrown, not swallowed.
+ */
+interface ReportSink {
+
+    // File extension of the format, e.g. "html"
+    String extension();
+
+    // HTTP content type of the format (server mode)
+    String contentType();
+
+    void write(Report report, Writer out) throws IOException;
+
+    // Sink of a format name (html, json, csv), null if unknown
+    static ReportSink of(String format) {
+        switch (format) {
+            case "html":
+                return new HtmlReport();
+            case "json":
+                return new JsonReport();
+            case "csv":
+                return new CsvReport();
+            default:
+                return null;
+        }
+    }
+}
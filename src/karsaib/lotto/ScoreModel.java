@@ -0,0 +1,26 @@
+package karsaib.lotto;
+
+import java.util.Locale;
+
+/*
+ * Weights of the four factors of the score (normalized occurrences, max gap,
+ * draws since last and cycle factor). DEFAULT is the weighting of the report.
+ */
+record ScoreModel(double occ, double gap, double since, double cycle) {
+
+    static final ScoreModel DEFAULT = new ScoreModel(0.25, 0.20, 0.25, 0.30);
+
+    // Score of the factors at features[offset..offset+3] (see NumberStats.FEATURES)
+    double score(double[] features, int offset) {
+        return features[offset] * occ
+                + features[offset + 1] * gap
+                + features[offset + 2] * since
+                + features[offset + 3] * cycle;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "occ %.3f, gap %.3f, since %.3f, cycle %.3f",
+                occ, gap, since, cycle);
+    }
+}
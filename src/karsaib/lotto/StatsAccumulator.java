@@ -0,0 +1,169 @@
+package karsaib.lotto;
+
+/*
+ * Single pass statistics over a stream of draws (newest draw first).
+ * Every per-number figure is kept in a flat array indexed by the number
+ * (1..maxNumber), so the hot loop does no boxing and no map lookups.
+ *
+ * Rows are addressed by a position that grows towards the older draws:
+ * accept() adds an older draw below the history, acceptNewer() a newer one
+ * on top of it. Both only touch the numbers of the added draw.
+ *
+ * acceptOlder() appends a whole accumulator of older draws (the next block
+ * of the history) in O(maxNumber). Joining blocks this way is associative and
+ * gives the same state as streaming their draws, so blocks can be computed
+ * in parallel (see PartitionStats).
+ */
+final class StatsAccumulator {
+
+    final int maxNumber;
+
+    final int[] occurrences;
+    final int[] maxGap;
+    final int[] gapSum;
+    final int[] gapCount;
+    // Position of the newest and of the oldest occurrence (valid if occurrences > 0)
+    final int[] newest;
+    final int[] oldest;
+
+    // Position of the newest row, and one past the oldest row
+    private int top;
+    private int bottom;
+    private int[] firstRow;
+
+    StatsAccumulator(int maxNumber) {
+        this.maxNumber = maxNumber;
+        this.occurrences = new int[maxNumber + 1];
+        this.maxGap = new int[maxNumber + 1];
+        this.gapSum = new int[maxNumber + 1];
+        this.gapCount = new int[maxNumber + 1];
+        this.newest = new int[maxNumber + 1];
+        this.oldest = new int[maxNumber + 1];
+    }
+
+    // -------------------------------------------------------------------------
+    // Add the next (older) draw
+    // -------------------------------------------------------------------------
+    void accept(int[] row) {
+        if (firstRow == null) {
+            firstRow = row.clone();
+        }
+        int position = bottom++;
+
+        for (int num : row) {
+            if (occurrences[num]++ > 0) {
+                addGap(num, position - oldest[num]);
+            } else {
+                newest[num] = position;
+            }
+            oldest[num] = position;
+        }
+    }
+
+    void acceptAll(int[][] numbers) {
+        for (int[] row : numbers) {
+            accept(row);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Add a draw newer than every row so far (incremental update)
+    // -------------------------------------------------------------------------
+    void acceptNewer(int[] row) {
+        firstRow = row.clone();
+        int position = --top;
+
+        for (int num : row) {
+            if (occurrences[num]++ > 0) {
+                addGap(num, newest[num] - position);
+            } else {
+                oldest[num] = position;
+            }
+            newest[num] = position;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Add the draws of an accumulator whose newest draw is right below the
+    // oldest row so far (the older block is not modified)
+    // -------------------------------------------------------------------------
+    void acceptOlder(StatsAccumulator older) {
+        if (older.rows() == 0) {
+            return;
+        }
+        if (firstRow == null) {
+            firstRow = older.firstRow;
+        }
+        // Position of the older block's rows below this one
+        int shift = bottom - older.top;
+
+        for (int num = 1; num <= maxNumber; num++) {
+            if (older.occurrences[num] == 0) continue;
+
+            if (occurrences[num] > 0) {
+                addGap(num, older.newest[num] + shift - oldest[num]);
+            } else {
+                newest[num] = older.newest[num] + shift;
+            }
+            occurrences[num] += older.occurrences[num];
+            gapSum[num] += older.gapSum[num];
+            gapCount[num] += older.gapCount[num];
+            if (older.maxGap[num] > maxGap[num]) {
+                maxGap[num] = older.maxGap[num];
+            }
+            oldest[num] = older.oldest[num] + shift;
+        }
+        bottom += older.rows();
+    }
+
+    private void addGap(int num, int gap) {
+        if (gap > maxGap[num]) {
+            maxGap[num] = gap;
+        }
+        gapSum[num] += gap;
+        gapCount[num]++;
+    }
+
+    int rows() {
+        return bottom - top;
+    }
+
+    // Draws since the newest occurrence (0 = legfrissebb húzás), -1 = never drawn
+    int latestRow(int num) {
+        return occurrences[num] == 0 ? -1 : newest[num] - top;
+    }
+
+    // Draws since the oldest occurrence, -1 = never drawn
+    int oldestRow(int num) {
+        return occurrences[num] == 0 ? -1 : oldest[num] - top;
+    }
+
+    // Newest draw of the history
+    int[] firstRow() {
+        return firstRow;
+    }
+
+    // Independent copy of the current state (e.g. a checkpoint of a walk)
+    StatsAccumulator copy() {
+        StatsAccumulator copy = new StatsAccumulator(maxNumber);
+        System.arraycopy(occurrences, 0, copy.occurrences, 0, occurrences.length);
+        System.arraycopy(maxGap, 0, copy.maxGap, 0, maxGap.length);
+        System.arraycopy(gapSum, 0, copy.gapSum, 0, gapSum.length);
+        System.arraycopy(gapCount, 0, copy.gapCount, 0, gapCount.length);
+        System.arraycopy(newest, 0, copy.newest, 0, newest.length);
+        System.arraycopy(oldest, 0, copy.oldest, 0, oldest.length);
+        copy.top = top;
+        copy.bottom = bottom;
+        copy.firstRow = firstRow;
+        return copy;
+    }
+
+    // -------------------------------------------------------------------------
+    // Restore a saved state (rows counted from the newest draw, see StatsSnapshot)
+    // -------------------------------------------------------------------------
+    void restore(int rows, int[] firstRow) {
+        this.top = 0;
+        this.bottom = rows;
+        this.firstRow = firstRow == null ? null : firstRow.clone();
+    }
+}
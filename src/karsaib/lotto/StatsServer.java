@@ -0,0 +1,284 @@
+package karsaib.lotto;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/*
+ * Statistics server (serve mode). Every game's history is loaded once, the
+ * reports are rendered into memory in every format and served from there:
+ *
+ *   /                     index of the games
+ *   /<game>               HTML report (e.g. /hatos)
+ *   /<game>.<html|json|csv>
+ *
+ * The pages are immutable and published as one Catalog through a volatile
+ * field: a refresh builds the changed pages aside and swaps the catalog, so
+ * requests never wait for a refresh or a lock. Responses have an ETag (CRC32
+ * of the body) and a matching If-None-Match gets a 304.
+ *
+ * A scheduler refreshes the games after their draw days (REFRESH_AT, Budapest
+ * time); if the export has no new draw yet, it is tried again later.
+ * Requests run on virtual threads.
+ */
+final class StatsServer {
+
+    static final int DEFAULT_PORT = 8080;
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Budapest");
+    // Draws are over and published by then
+    private static final LocalTime REFRESH_AT = LocalTime.of(22, 0);
+    private static final Duration RETRY = Duration.ofHours(1);
+    private static final int RETRIES = 6;
+
+    private static final List<ReportSink> SINKS = List.of(new HtmlReport(), new JsonReport(), new CsvReport());
+
+    private final boolean triples;
+    private final String windows;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    // Swapped on refresh, never modified
+    private volatile Catalog catalog = new Catalog(Map.of(), Map.of());
+
+    // -------------------------------------------------------------------------
+    // Immutable content: a rendered page, the rendered pages of one game
+    // -------------------------------------------------------------------------
+    private record Page(byte[] body, String contentType, String etag) {
+
+        static Page of(byte[] body, String contentType) {
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            return new Page(body, contentType, "\"" + Long.toHexString(crc.getValue()) + "-" + body.length + "\"");
+        }
+    }
+
+    private record Entry(int rows, Map<String, Page> pages) {
+    }
+
+    // Pages by path
+    private record Catalog(Map<Game, Entry> games, Map<String, Page> pages) {
+    }
+
+    private StatsServer(boolean triples, String windows) {
+        this.triples = triples;
+        this.windows = windows;
+    }
+
+    // Load the games, then serve until the process is stopped
+    static void start(int port, boolean triples, String windows) throws IOException {
+        StatsServer server = new StatsServer(triples, windows);
+        for (Game game : Game.values()) {
+            server.refresh(game, 0);
+        }
+
+        HttpServer http = HttpServer.create(new InetSocketAddress(port), 0);
+        http.createContext("/", server::handle);
+        http.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        http.start();
+        server.scheduleRefresh();
+        System.out.println("Serving on http://localhost:" + http.getAddress().getPort() + "/");
+    }
+
+    // -------------------------------------------------------------------------
+    // Requests (GET / HEAD, from the current catalog)
+    // -------------------------------------------------------------------------
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            boolean head = method.equals("HEAD");
+            Headers headers = exchange.getResponseHeaders();
+            if (!head && !method.equals("GET")) {
+                headers.set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            Page page = catalog.pages().get(exchange.getRequestURI().getPath());
+            if (page == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            headers.set("Content-Type", page.contentType());
+            headers.set("ETag", page.etag());
+            headers.set("Cache-Control", "no-cache");
+            if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), page.etag())) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            if (head) {
+                headers.set("Content-Length", String.valueOf(page.body().length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, page.body().length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(page.body());
+            }
+        }
+    }
+
+    // If-None-Match: "*" or a list of ETags (weak ones compare equal too)
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // -------------------------------------------------------------------------
+    // Refresh after the draw days
+    // -------------------------------------------------------------------------
+    private void scheduleRefresh() {
+        ZonedDateTime now = ZonedDateTime.now(ZONE);
+        ZonedDateTime next = now.with(REFRESH_AT);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        while (!isDrawDay(next.getDayOfWeek())) {
+            next = next.plusDays(1);
+        }
+        scheduler.schedule(this::refreshDrawDay, Duration.between(now, next).toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static boolean isDrawDay(DayOfWeek day) {
+        for (Game game : Game.values()) {
+            if (game.drawDays.contains(day)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void refreshDrawDay() {
+        DayOfWeek today = ZonedDateTime.now(ZONE).getDayOfWeek();
+        for (Game game : Game.values()) {
+            if (game.drawDays.contains(today)) {
+                refresh(game, RETRIES);
+            }
+        }
+        scheduleRefresh();
+    }
+
+    // Update a game and publish it if it has new draws; with retries left,
+    // an export without a new draw (or a failure) is tried again later
+    private void refresh(Game game, int retries) {
+        boolean changed;
+        try {
+            changed = publish(game, load(game));
+        } catch (IOException | RuntimeException e) {
+            System.out.println(game.id + ": refresh failed (" + e + ")");
+            changed = false;
+        }
+        if (!changed && retries > 0) {
+            scheduler.schedule(() -> refresh(game, retries - 1), RETRY.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Download mode update, rendered; the last draw store if the download
+    // fails and nothing is loaded yet. Null if there is no new draw.
+    private Entry load(Game game) throws IOException {
+        Metrics metrics = new Metrics(game);
+        StatsAccumulator stats;
+        DrawStore store;
+        try {
+            stats = Main.update(game.url, game, metrics).stats;
+            store = DrawStore.open(DrawStore.pathOf(game));
+        } catch (IOException e) {
+            if (catalog.games().containsKey(game)) {
+                throw e;
+            }
+            System.out.println(game.id + ": download failed (" + e.getMessage() + "), using the draw store");
+            store = Main.openStore(DrawStore.pathOf(game), game);
+            // The report joins the statistics of the store
+            stats = null;
+        }
+        Entry current = catalog.games().get(game);
+        if (current != null && current.rows() == (stats != null ? stats.rows() : store.size())) {
+            return null;
+        }
+
+        Report report = Main.buildReport(game, stats, store, triples, windows, metrics);
+        Map<String, Page> pages = new HashMap<>();
+        for (ReportSink sink : SINKS) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+                sink.write(report, writer);
+            }
+            Page page = Page.of(bytes.toByteArray(), sink.contentType());
+            pages.put("/" + game.id + "." + sink.extension(), page);
+            if (sink instanceof HtmlReport) {
+                pages.put("/" + game.id, page);
+            }
+        }
+        return new Entry(report.stats().totalRows, pages);
+    }
+
+    // Swap in a new catalog with the game's entry; false if there is none.
+    // Only the scheduler thread (or the start before serving) publishes.
+    private boolean publish(Game game, Entry entry) {
+        if (entry == null) {
+            return false;
+        }
+        Map<Game, Entry> games = new EnumMap<>(Game.class);
+        games.putAll(catalog.games());
+        games.put(game, entry);
+
+        Map<String, Page> pages = new HashMap<>();
+        for (Entry e : games.values()) {
+            pages.putAll(e.pages());
+        }
+        pages.put("/", index(games));
+        catalog = new Catalog(Collections.unmodifiableMap(games), Collections.unmodifiableMap(pages));
+        System.out.println(game.id + ": " + entry.rows() + " draws published");
+        return true;
+    }
+
+    private static Page index(Map<Game, Entry> games) {
+        StringBuilder out = new StringBuilder(512);
+        out.append("<html><head><meta charset=\"UTF-8\"><title>Lottó statistics</title></head><body>");
+        out.append("<h1>Lottó statistics</h1><ul>");
+        for (Map.Entry<Game, Entry> game : games.entrySet()) {
+            String id = game.getKey().id;
+            out.append("<li><a href=\"/").append(id).append("\">").append(id).append("</a> (")
+                    .append(game.getValue().rows()).append(" draws)");
+            for (ReportSink sink : SINKS) {
+                out.append(" <a href=\"/").append(id).append('.').append(sink.extension()).append("\">")
+                        .append(sink.extension()).append("</a>");
+            }
+            out.append("</li>");
+        }
+        out.append("</ul></body></html>");
+        return Page.of(out.toString().getBytes(StandardCharsets.UTF_8), "text/html; charset=UTF-8");
+    }
+}
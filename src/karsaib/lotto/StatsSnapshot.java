@@ -0,0 +1,136 @@
+package karsaib.lotto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/*
+ * Compact binary snapshot of the statistics of one game, saved after each run:
+ * the per-number state of StatsAccumulator and the identity of the newest
+ * draw. The next run only folds in the draws newer than that one.
+ *
+ * Layout: magic, version, game id, number range, rows, newest draw key,
+ * newest draw numbers, six ints per number, CRC32 of everything before it.
+ */
+final class StatsSnapshot {
+
+    private static final int MAGIC = 0x4C4F5453; // "LOTS"
+    private static final int VERSION = 1;
+
+    final StatsAccumulator stats;
+    final DrawKey newestKey;
+
+    StatsSnapshot(StatsAccumulator stats, DrawKey newestKey) {
+        this.stats = stats;
+        this.newestKey = newestKey;
+    }
+
+    static Path pathOf(Game game) {
+        return Path.of(game.id + ".snapshot");
+    }
+
+    // -------------------------------------------------------------------------
+    // Save (written to a temp file first, so a crash never leaves half a file)
+    // -------------------------------------------------------------------------
+    void save(Path path, Game game) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(game.id);
+        out.writeInt(game.maxNumber);
+        out.writeInt(game.numbersPerRow);
+        out.writeInt(stats.rows());
+        out.writeInt(newestKey.year());
+        out.writeInt(newestKey.week());
+        out.writeInt(newestKey.date());
+        for (int num : stats.firstRow()) {
+            out.writeByte(num);
+        }
+        for (int num = 1; num <= game.maxNumber; num++) {
+            out.writeInt(stats.occurrences[num]);
+            out.writeInt(stats.gapSum[num]);
+            out.writeInt(stats.gapCount[num]);
+            out.writeInt(stats.maxGap[num]);
+            out.writeInt(stats.latestRow(num));
+            out.writeInt(stats.oldestRow(num));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, bytes.toByteArray());
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // -------------------------------------------------------------------------
+    // Load, null if the snapshot is missing, corrupt or belongs to another game
+    // -------------------------------------------------------------------------
+    static StatsSnapshot load(Path path, Game game) {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(path);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.out.println("Snapshot not readable (" + e.getMessage() + "), full rebuild.");
+            return null;
+        }
+
+        try {
+            if (content.length < Long.BYTES) {
+                throw new IOException("too short");
+            }
+            CRC32 crc = new CRC32();
+            crc.update(content, 0, content.length - Long.BYTES);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+            in.skipNBytes(content.length - Long.BYTES);
+            if (in.readLong() != crc.getValue()) {
+                throw new IOException("checksum mismatch");
+            }
+
+            in = new DataInputStream(new ByteArrayInputStream(content));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("unknown format");
+            }
+            if (!in.readUTF().equals(game.id)
+                    || in.readInt() != game.maxNumber
+                    || in.readInt() != game.numbersPerRow) {
+                System.out.println("Snapshot of another game, full rebuild.");
+                return null;
+            }
+
+            int rows = in.readInt();
+            DrawKey newestKey = new DrawKey(in.readInt(), in.readInt(), in.readInt());
+            int[] firstRow = new int[game.numbersPerRow];
+            for (int i = 0; i < firstRow.length; i++) {
+                firstRow[i] = in.readUnsignedByte();
+            }
+
+            StatsAccumulator stats = new StatsAccumulator(game.maxNumber);
+            for (int num = 1; num <= game.maxNumber; num++) {
+                stats.occurrences[num] = in.readInt();
+                stats.gapSum[num] = in.readInt();
+                stats.gapCount[num] = in.readInt();
+                stats.maxGap[num] = in.readInt();
+                stats.newest[num] = in.readInt();
+                stats.oldest[num] = in.readInt();
+            }
+            stats.restore(rows, firstRow);
+            return new StatsSnapshot(stats, newestKey);
+        } catch (IOException e) {
+            System.out.println("Snapshot corrupt (" + e.getMessage() + "), full rebuild.");
+            return null;
+        }
+    }
+}
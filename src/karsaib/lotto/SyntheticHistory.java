@@ -0,0 +1,82 @@
+package karsaib.lotto;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
+import java.util.SplittableRandom;
+
+/*
+ * Seeded synthetic history of a game in the layout of the official CSV export
+ * (newest draw first, prize columns before the numbers), for testing the
+ * score model and for the benchmarks. The same seed gives the same file.
+ *
+ * One draw a week from START on the game's first draw day; every drawing of a
+ * row is drawn uniformly without replacement and listed in ascending order.
+ * Beyond year 9999 the date column no longer parses (4 digit years), the
+ * year / week columns still identify the draw.
+ */
+final class SyntheticHistory {
+
+    private static final LocalDate START = LocalDate.of(2000, 1, 1);
+    private static final String[] WEEKDAYS = {"Hétfő", "Kedd", "Szerda", "Csütörtök", "Péntek", "Szombat", "Vasárnap"};
+
+    private SyntheticHistory() {
+    }
+
+    static void write(Path path, Game game, int draws, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        int drawings = game.numbersPerRow / game.numbersPerDraw;
+        boolean[] drawn = new boolean[game.maxNumber + 1];
+        // Winners and prizes of the hit classes
+        int classes = game == Game.HATOS ? 5 : 4;
+        DayOfWeek drawDay = game.drawDays.iterator().next();
+        LocalDate first = START.with(TemporalAdjusters.nextOrSame(drawDay));
+        StringBuilder line = new StringBuilder(128);
+
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (int i = draws - 1; i >= 0; i--) {
+                LocalDate date = first.plusWeeks(i);
+                line.setLength(0);
+                line.append(date.get(IsoFields.WEEK_BASED_YEAR)).append(';')
+                        .append(date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR)).append(';');
+                if (game == Game.HATOS) {
+                    line.append(WEEKDAYS[date.getDayOfWeek().getValue() - 1]).append(';');
+                }
+                line.append(date.getYear()).append('.');
+                pad(line, date.getMonthValue()).append('.');
+                pad(line, date.getDayOfMonth()).append(".;");
+                for (int c = 0; c < classes; c++) {
+                    line.append(random.nextInt(100)).append(';')
+                            .append(random.nextInt(1000)).append(' ').append(random.nextInt(100, 1000)).append(" Ft;");
+                }
+                for (int d = 0; d < drawings; d++) {
+                    for (int n = 0; n < game.numbersPerDraw; ) {
+                        int num = random.nextInt(1, game.maxNumber + 1);
+                        if (!drawn[num]) {
+                            drawn[num] = true;
+                            n++;
+                        }
+                    }
+                    for (int num = 1; num <= game.maxNumber; num++) {
+                        if (drawn[num]) {
+                            line.append(num).append(';');
+                            drawn[num] = false;
+                        }
+                    }
+                }
+                line.setLength(line.length() - 1);
+                out.append(line).append('\n');
+            }
+        }
+    }
+
+    private static StringBuilder pad(StringBuilder out, int value) {
+        return out.append(value < 10 ? "0" : "").append(value);
+    }
+}
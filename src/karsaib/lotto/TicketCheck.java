@@ -0,0 +1,226 @@
+package karsaib.lotto;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Bulk check of player tickets against every drawing of the history: for
+ * each ticket, how many drawings it hit with 2, 3, .. k numbers.
+ *
+ * Tickets and drawings are number bitmasks (the word layout of DrawStore,
+ * bit num - 1), so the hits of a ticket in a drawing are
+ * popcount(ticket & drawing) instead of comparing the numbers pairwise.
+ * Each drawing of a Skandi row counts separately.
+ *
+ * The ticket file is streamed (memory-mapped, one ticket per line, numbers
+ * separated by anything but digits) in chunks of CHUNK tickets. A chunk is
+ * evaluated in parallel on the fork-join pool and written out before the next
+ * one is read, so memory does not grow with the file.
+ */
+final class TicketCheck {
+
+    // Tickets per chunk
+    private static final int CHUNK = 1 << 16;
+    // Tickets evaluated by one leaf task
+    private static final int LEAF = 256;
+
+    final int maxNumber;
+    final int ticketSize;
+    private final int words;
+    // Drawing j at j * words .. j * words + words - 1
+    private final long[] drawings;
+    private final int drawingCount;
+
+    // Current chunk: ticket i at i * words, its hits at i * (ticketSize + 1) + h
+    private final long[] tickets;
+    private final int[] hits;
+    private int chunkSize;
+
+    // Totals of the run
+    private long checked;
+    private long rejected;
+    private final long[] totals;
+
+    private TicketCheck(DrawStore store) {
+        this.maxNumber = store.maxNumber;
+        this.ticketSize = store.numbersPerDraw;
+        this.words = store.wordsPerDraw;
+        int perRow = store.numbersPerRow / store.numbersPerDraw;
+        this.drawingCount = store.size() * perRow;
+        this.drawings = new long[drawingCount * words];
+        for (int i = 0; i < store.size(); i++) {
+            for (int w = 0; w < perRow * words; w++) {
+                drawings[i * perRow * words + w] = store.word(i, w);
+            }
+        }
+        this.tickets = new long[CHUNK * words];
+        this.hits = new int[CHUNK * (ticketSize + 1)];
+        this.totals = new long[ticketSize + 1];
+    }
+
+    static TicketCheck of(DrawStore store) {
+        return new TicketCheck(store);
+    }
+
+    int drawings() {
+        return drawingCount;
+    }
+
+    long checked() {
+        return checked;
+    }
+
+    // Lines that are not a ticket of ticketSize distinct numbers in 1..maxNumber
+    long rejected() {
+        return rejected;
+    }
+
+    // Hits with h numbers, summed over the tickets
+    long total(int h) {
+        return totals[h];
+    }
+
+    // -------------------------------------------------------------------------
+    // Check a ticket file; one CSV line per ticket to out:
+    // ticket,hits2,..,hitsK (the ticket's numbers ascending, space separated)
+    // -------------------------------------------------------------------------
+    void run(Path ticketFile, Writer out) throws IOException {
+        out.write("ticket");
+        for (int h = 2; h <= ticketSize; h++) {
+            out.write(",hits" + h);
+        }
+        out.write("\n");
+
+        StringBuilder row = new StringBuilder(64);
+        MappedCsvReader.forEachLine(ticketFile, (buffer, from, to) -> {
+            if (parse(buffer, from, to, chunkSize * words)) {
+                if (++chunkSize == CHUNK) {
+                    flush(out, row);
+                }
+            }
+            return true;
+        });
+        flush(out, row);
+    }
+
+    // Ticket mask at tickets[at ..]; false (counted if not blank) if the line is no ticket
+    private boolean parse(ByteBuffer buffer, int from, int to, int at) {
+        for (int w = 0; w < words; w++) {
+            tickets[at + w] = 0;
+        }
+        int count = 0;
+        boolean valid = true;
+        int i = from;
+        while (i < to) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                i++;
+                continue;
+            }
+            int num = 0;
+            while (i < to && (b = buffer.get(i)) >= '0' && b <= '9') {
+                num = Math.min(num * 10 + (b - '0'), maxNumber + 1);
+                i++;
+            }
+            if (num < 1 || num > maxNumber) {
+                valid = false;
+                continue;
+            }
+            int word = at + (num - 1) / Long.SIZE;
+            long bit = 1L << (num - 1);
+            if ((tickets[word] & bit) != 0) {
+                valid = false;
+            }
+            tickets[word] |= bit;
+            count++;
+        }
+        if (count == 0 && valid) {
+            return false; // blank line
+        }
+        if (!valid || count != ticketSize) {
+            rejected++;
+            return false;
+        }
+        return true;
+    }
+
+    // Evaluate and write the current chunk
+    private void flush(Writer out, StringBuilder row) throws IOException {
+        if (chunkSize == 0) {
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new Evaluate(0, chunkSize));
+
+        int stride = ticketSize + 1;
+        for (int t = 0; t < chunkSize; t++) {
+            row.setLength(0);
+            boolean first = true;
+            for (int w = 0; w < words; w++) {
+                long word = tickets[t * words + w];
+                while (word != 0) {
+                    if (!first) row.append(' ');
+                    first = false;
+                    row.append(w * Long.SIZE + Long.numberOfTrailingZeros(word) + 1);
+                    word &= word - 1;
+                }
+            }
+            for (int h = 2; h <= ticketSize; h++) {
+                int count = hits[t * stride + h];
+                totals[h] += count;
+                row.append(',').append(count);
+            }
+            out.append(row.append('\n'));
+        }
+        checked += chunkSize;
+        chunkSize = 0;
+    }
+
+    // -------------------------------------------------------------------------
+    // Parallel evaluation of a chunk (popcount per ticket and drawing)
+    // -------------------------------------------------------------------------
+    @SuppressWarnings("serial")
+    private final class Evaluate extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+
+        Evaluate(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Evaluate(from, mid), new Evaluate(mid, to));
+                return;
+            }
+            int stride = ticketSize + 1;
+            for (int t = from; t < to; t++) {
+                int base = t * stride;
+                for (int h = 0; h < stride; h++) {
+                    hits[base + h] = 0;
+                }
+                if (words == 1) {
+                    long ticket = tickets[t];
+                    for (int j = 0; j < drawingCount; j++) {
+                        hits[base + Long.bitCount(ticket & drawings[j])]++;
+                    }
+                } else {
+                    for (int j = 0; j < drawingCount; j++) {
+                        int common = 0;
+                        for (int w = 0; w < words; w++) {
+                            common += Long.bitCount(tickets[t * words + w] & drawings[j * words + w]);
+                        }
+                        hits[base + common]++;
+                    }
+                }
+            }
+        }
+    }
+}
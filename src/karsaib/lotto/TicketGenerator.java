@@ -0,0 +1,302 @@
+package karsaib.lotto;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * Top K whole tickets by score: the sum of the numbers' weighted scores,
+ * plus an optional bonus for every pair of the ticket that was often drawn
+ * together (pairWeight * pair count / highest pair count). Tickets can be
+ * limited to a range of the number sum and of the odd numbers.
+ *
+ * Every combination is enumerated in lexicographic order without building a
+ * candidate list (5/90: 43.9M tickets). The work is split by the first two
+ * numbers and run on the fork-join pool; each leaf keeps its best tickets in
+ * a bounded min-heap of primitives, the heaps are merged on the way up.
+ *
+ * Branch and bound: a prefix is dropped when even the best scores of the
+ * remaining numbers (and the highest pair bonus for every pair left) cannot
+ * beat the worst ticket in the heap, or when the sum / odd constraints can no
+ * longer be met. Ties are broken by the lexicographically smaller ticket, so
+ * the result does not depend on the split.
+ */
+final class TicketGenerator {
+
+    // Prefixes (first two numbers) per leaf task
+    private static final int LEAF = 16;
+    // Slack of the bound for the rounding of the score sums
+    private static final double EPSILON = 1e-9;
+    // Bits per number of a packed ticket (first number highest)
+    private static final int BITS = 7;
+
+    final int maxNumber;
+    final int size;
+    private final int topK;
+    private final double[] score;
+    // Weighted pair bonus of a < b at a * (maxNumber + 1) + b
+    private final double[] pair;
+    private final double maxPair;
+    private final Constraints constraints;
+    // best[from * (size + 1) + r]: sum of the r highest scores among the numbers >= from
+    private final double[] best;
+    // First two numbers of the leaf prefixes
+    private final int[] prefixA;
+    private final int[] prefixB;
+
+    private final long[] tickets;
+    private final double[] scores;
+
+    // Inclusive ranges of the number sum and of the odd numbers of a ticket
+    record Constraints(int minSum, int maxSum, int minOdd, int maxOdd) {
+
+        static Constraints none(int size, int maxNumber) {
+            return new Constraints(0, size * maxNumber, 0, size);
+        }
+    }
+
+    private TicketGenerator(NumberStats stats, int size, int topK, CoOccurrence pairs, double pairWeight,
+                            Constraints constraints) {
+        this.maxNumber = stats.maxNumber;
+        this.size = size;
+        this.topK = topK;
+        this.constraints = constraints;
+        this.score = new double[maxNumber + 2];
+        for (int num = 1; num <= maxNumber; num++) {
+            score[num] = stats.score(num);
+        }
+
+        this.pair = new double[(maxNumber + 1) * (maxNumber + 1)];
+        double bonus = 0;
+        if (pairs != null && pairWeight != 0) {
+            int maxCount = 1;
+            for (int a = 1; a <= maxNumber; a++) {
+                for (int b = a + 1; b <= maxNumber; b++) {
+                    maxCount = Math.max(maxCount, pairs.pairCount(a, b));
+                }
+            }
+            for (int a = 1; a <= maxNumber; a++) {
+                for (int b = a + 1; b <= maxNumber; b++) {
+                    pair[a * (maxNumber + 1) + b] = pairWeight * pairs.pairCount(a, b) / maxCount;
+                    bonus = Math.max(bonus, pair[a * (maxNumber + 1) + b]);
+                }
+            }
+        }
+        this.maxPair = bonus;
+
+        this.best = new double[(maxNumber + 2) * (size + 1)];
+        // Scores of the numbers >= from, descending
+        double[] sorted = new double[maxNumber];
+        for (int from = maxNumber; from >= 1; from--) {
+            int i = maxNumber - from;
+            while (i > 0 && sorted[i - 1] < score[from]) {
+                sorted[i] = sorted[i - 1];
+                i--;
+            }
+            sorted[i] = score[from];
+            double sum = 0;
+            for (int r = 1; r <= Math.min(size, maxNumber - from + 1); r++) {
+                sum += sorted[r - 1];
+                best[from * (size + 1) + r] = sum;
+            }
+        }
+
+        int prefixes = 0;
+        for (int a = 1; a <= maxNumber; a++) {
+            prefixes += Math.max(0, maxNumber - a - size + 2);
+        }
+        this.prefixA = new int[prefixes];
+        this.prefixB = new int[prefixes];
+        int p = 0;
+        for (int a = 1; a <= maxNumber; a++) {
+            for (int b = a + 1; b <= maxNumber - size + 2; b++) {
+                prefixA[p] = a;
+                prefixB[p] = b;
+                p++;
+            }
+        }
+
+        Heap result = size < 2 || prefixes == 0
+                ? new Heap(topK)
+                : ForkJoinPool.commonPool().invoke(new Search(0, prefixes));
+        int count = result.size;
+        this.tickets = new long[count];
+        this.scores = new double[count];
+        for (int i = count - 1; i >= 0; i--) {
+            tickets[i] = result.tickets[0];
+            scores[i] = result.scores[0];
+            result.pop();
+        }
+    }
+
+    // Best topK tickets of size numbers; pairs may be null (no pair bonus)
+    static TicketGenerator of(NumberStats stats, int size, int topK, CoOccurrence pairs, double pairWeight,
+                              Constraints constraints) {
+        return new TicketGenerator(stats, size, topK, pairs, pairWeight, constraints);
+    }
+
+    // -------------------------------------------------------------------------
+    // Results, best first
+    // -------------------------------------------------------------------------
+    int count() {
+        return tickets.length;
+    }
+
+    int[] ticket(int i) {
+        int[] numbers = new int[size];
+        for (int j = size - 1; j >= 0; j--) {
+            numbers[j] = (int) (tickets[i] >>> ((size - 1 - j) * BITS)) & ((1 << BITS) - 1);
+        }
+        return numbers;
+    }
+
+    double score(int i) {
+        return scores[i];
+    }
+
+    // -------------------------------------------------------------------------
+    // Bounded min-heap of (score, packed ticket), worst ticket at the root
+    // -------------------------------------------------------------------------
+    private static final class Heap {
+
+        final double[] scores;
+        final long[] tickets;
+        int size;
+
+        Heap(int capacity) {
+            this.scores = new double[capacity];
+            this.tickets = new long[capacity];
+        }
+
+        boolean full() {
+            return size == scores.length;
+        }
+
+        // Lower score, or the same score and a later ticket
+        static boolean worse(double score, long ticket, double otherScore, long otherTicket) {
+            return score < otherScore || (score == otherScore && ticket > otherTicket);
+        }
+
+        void offer(double score, long ticket) {
+            if (!full()) {
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (!worse(score, ticket, scores[parent], tickets[parent])) break;
+                    scores[i] = scores[parent];
+                    tickets[i] = tickets[parent];
+                    i = parent;
+                }
+                scores[i] = score;
+                tickets[i] = ticket;
+            } else if (worse(scores[0], tickets[0], score, ticket)) {
+                siftDown(score, ticket);
+            }
+        }
+
+        void pop() {
+            size--;
+            if (size > 0) {
+                siftDown(scores[size], tickets[size]);
+            }
+        }
+
+        // Put the entry at the root and move it down
+        private void siftDown(double score, long ticket) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && worse(scores[child + 1], tickets[child + 1], scores[child], tickets[child])) {
+                    child++;
+                }
+                if (!worse(scores[child], tickets[child], score, ticket)) break;
+                scores[i] = scores[child];
+                tickets[i] = tickets[child];
+                i = child;
+            }
+            scores[i] = score;
+            tickets[i] = ticket;
+        }
+
+        void addAll(Heap other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.scores[i], other.tickets[i]);
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Parallel enumeration over the prefixes
+    // -------------------------------------------------------------------------
+    @SuppressWarnings("serial")
+    private final class Search extends RecursiveTask<Heap> {
+
+        private final int from;
+        private final int to;
+        private Heap heap;
+        private int[] numbers;
+
+        Search(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Heap compute() {
+            if (to - from > LEAF) {
+                int mid = (from + to) >>> 1;
+                Search right = new Search(mid, to);
+                right.fork();
+                Heap left = new Search(from, mid).compute();
+                left.addAll(right.join());
+                return left;
+            }
+            heap = new Heap(topK);
+            numbers = new int[size];
+            for (int p = from; p < to; p++) {
+                int a = prefixA[p];
+                int b = prefixB[p];
+                numbers[0] = a;
+                numbers[1] = b;
+                extend(2, b, score[a] + score[b] + pair[a * (maxNumber + 1) + b],
+                        a + b, (a & 1) + (b & 1), (long) a << BITS | b);
+            }
+            return heap;
+        }
+
+        // numbers[0 .. depth) are picked, last is the highest of them
+        private void extend(int depth, int last, double partial, int sum, int odd, long packed) {
+            int left = size - depth;
+            if (left == 0) {
+                if (sum >= constraints.minSum() && sum <= constraints.maxSum()
+                        && odd >= constraints.minOdd() && odd <= constraints.maxOdd()) {
+                    heap.offer(partial, packed);
+                }
+                return;
+            }
+            // Sum / odd constraints of the rest
+            if (odd > constraints.maxOdd() || odd + left < constraints.minOdd()) return;
+            if (sum + (2 * maxNumber - left + 1) * left / 2 < constraints.minSum()) return;
+
+            for (int num = last + 1; num <= maxNumber - left + 1; num++) {
+                // Smallest possible rest: num and the numbers right after it
+                if (sum + (2 * num + left - 1) * left / 2 > constraints.maxSum()) return;
+                // Bound: the best scores from num on and the highest bonus for every
+                // pair left; it only falls as num grows. A later ticket of the same
+                // score loses the tie, so only a higher score is searched for.
+                int pairsLeft = left * depth + left * (left - 1) / 2;
+                double bound = partial + best[num * (size + 1) + left] + maxPair * pairsLeft;
+                if (heap.full() && bound + EPSILON < heap.scores[0]) {
+                    return;
+                }
+
+                double next = partial + score[num];
+                for (int i = 0; i < depth; i++) {
+                    next += pair[numbers[i] * (maxNumber + 1) + num];
+                }
+                numbers[depth] = num;
+                extend(depth + 1, num, next, sum + num, odd + (num & 1), packed << BITS | num);
+            }
+        }
+    }
+}
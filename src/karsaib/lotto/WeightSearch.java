@@ -0,0 +1,142 @@
+package karsaib.lotto;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Search of the score weights that maximize the historical top-K hits.
+ * Candidates are points of the weight simplex (the four weights sum to 1):
+ * a regular grid of a given resolution, or uniform random points.
+ *
+ * Every candidate is a full pass over the history, so they are evaluated in
+ * parallel on the fork-join pool (work stealing over candidate ranges). The
+ * per-draw score factors of Backtest are shared read-only by all workers,
+ * each worker only has its own small Scratch.
+ */
+final class WeightSearch {
+
+    // Candidates evaluated by one leaf task
+    private static final int LEAF = 8;
+    // Candidates of one search at most. Each one is a pass over the whole
+    // history and holds four weights (32 bytes): the cap keeps the arrays
+    // around 36 MB, far more candidates than a search gets through anyway.
+    static final int MAX_CANDIDATES = 1 << 20;
+
+    private final Backtest backtest;
+    private final int topK;
+    // Weights of candidate i at i * 4 .. i * 4 + 3
+    private final double[] weights;
+    private final int[] totalHits;
+
+    private WeightSearch(Backtest backtest, int topK, double[] weights) {
+        this.backtest = backtest;
+        this.topK = topK;
+        this.weights = weights;
+        this.totalHits = new int[weights.length / 4];
+        ForkJoinPool.commonPool().invoke(new Evaluate(0, totalHits.length));
+    }
+
+    // Every point of the simplex with weights k / resolution
+    static WeightSearch grid(Backtest backtest, int topK, int resolution) {
+        long count = gridSize(resolution);
+        if (resolution < 1 || count > MAX_CANDIDATES) {
+            throw new IllegalArgumentException("Grid resolution out of range: " + resolution);
+        }
+        double[] weights = new double[(int) count * 4];
+        int i = 0;
+        for (int a = 0; a <= resolution; a++) {
+            for (int b = 0; a + b <= resolution; b++) {
+                for (int c = 0; a + b + c <= resolution; c++) {
+                    weights[i++] = (double) a / resolution;
+                    weights[i++] = (double) b / resolution;
+                    weights[i++] = (double) c / resolution;
+                    weights[i++] = (double) (resolution - a - b - c) / resolution;
+                }
+            }
+        }
+        return new WeightSearch(backtest, topK, weights);
+    }
+
+    // Points of the grid of the given resolution
+    static long gridSize(int resolution) {
+        return (long) (resolution + 1) * (resolution + 2) * (resolution + 3) / 6;
+    }
+
+    // Uniform random points of the simplex (normalized exponential variates)
+    static WeightSearch random(Backtest backtest, int topK, int count, long seed) {
+        if (count < 1 || count > MAX_CANDIDATES) {
+            throw new IllegalArgumentException("Candidate count out of range: " + count);
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] weights = new double[count * 4];
+        for (int i = 0; i < count; i++) {
+            double sum = 0;
+            for (int j = 0; j < 4; j++) {
+                double e = -Math.log(1.0 - random.nextDouble());
+                weights[i * 4 + j] = e;
+                sum += e;
+            }
+            for (int j = 0; j < 4; j++) {
+                weights[i * 4 + j] /= sum;
+            }
+        }
+        return new WeightSearch(backtest, topK, weights);
+    }
+
+    @SuppressWarnings("serial")
+    private final class Evaluate extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+
+        Evaluate(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Evaluate(from, mid), new Evaluate(mid, to));
+                return;
+            }
+            Backtest.Scratch scratch = new Backtest.Scratch(backtest.maxNumber, topK);
+            for (int i = from; i < to; i++) {
+                totalHits[i] = backtest.totalHits(candidate(i), topK, scratch);
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Results
+    // -------------------------------------------------------------------------
+    int candidates() {
+        return totalHits.length;
+    }
+
+    ScoreModel candidate(int i) {
+        return new ScoreModel(weights[i * 4], weights[i * 4 + 1], weights[i * 4 + 2], weights[i * 4 + 3]);
+    }
+
+    int totalHits(int i) {
+        return totalHits[i];
+    }
+
+    // Candidates ordered by total hits (highest first, ties by candidate order)
+    int[] best(int n) {
+        int[] best = new int[Math.min(n, totalHits.length)];
+        int size = 0;
+        for (int i = 0; i < totalHits.length; i++) {
+            if (size == best.length && totalHits[i] <= totalHits[best[size - 1]]) continue;
+            int j = size < best.length ? size++ : size - 1;
+            while (j > 0 && totalHits[best[j - 1]] < totalHits[i]) {
+                best[j] = best[j - 1];
+                j--;
+            }
+            best[j] = i;
+        }
+        return best;
+    }
+}
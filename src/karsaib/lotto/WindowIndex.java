@@ -0,0 +1,208 @@
+package karsaib.lotto;
+
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+
+/*
+ * Statistics of any window of the history (e.g. the last 200 draws, or a date
+ * range) without rescanning the draws. Built once over the rows (oldest first):
+ *
+ *  - prefix sums of the occurrences: prefix[t][num] = occurrences of num in
+ *    draws [0, t), so a window's count is prefix[to] - prefix[from];
+ *  - the draw index of every occurrence, per number in ascending order; the
+ *    prefix count is the rank of the first occurrence in the window, so the
+ *    first and last occurrence are direct lookups (the gap sum of a window is
+ *    last - first);
+ *  - a sparse table of the gaps between consecutive occurrences per number,
+ *    answering the max gap of a window in O(1).
+ *
+ * A window query is O(maxNumber) and gives the same StatsAccumulator state as
+ * streaming the window's draws.
+ */
+final class WindowIndex {
+
+    final int maxNumber;
+    private final int size;
+    private final int[][] rows;
+    // Chronological key (yyyymmdd) of each draw, for date ranges
+    private final int[] keys;
+    private final int stride;
+    private final int[] prefix;
+    // Occurrences of num: positions[start[num] .. start[num + 1])
+    private final int[] start;
+    private final int[] positions;
+    // gapMax[level][start[num] + i] = max of the 2^level gaps of num from gap i
+    // (gap i = positions[i + 1] - positions[i])
+    private final int[][] gapMax;
+
+    private WindowIndex(DrawStore store) {
+        this.maxNumber = store.maxNumber;
+        this.rows = store.rows();
+        this.size = rows.length;
+        this.stride = maxNumber + 1;
+        this.keys = new int[size];
+        this.prefix = new int[(size + 1) * stride];
+
+        for (int t = 0; t < size; t++) {
+            keys[t] = key(store.date(t), store.year(t), store.week(t), store.weekday(t));
+            System.arraycopy(prefix, t * stride, prefix, (t + 1) * stride, stride);
+            for (int num : rows[t]) {
+                prefix[(t + 1) * stride + num]++;
+            }
+        }
+
+        this.start = new int[maxNumber + 2];
+        for (int num = 1; num <= maxNumber; num++) {
+            start[num + 1] = start[num] + prefix[size * stride + num];
+        }
+        this.positions = new int[start[maxNumber + 1]];
+        int[] next = start.clone();
+        for (int t = 0; t < size; t++) {
+            for (int num : rows[t]) {
+                positions[next[num]++] = t;
+            }
+        }
+
+        int maxOccurrences = 0;
+        for (int num = 1; num <= maxNumber; num++) {
+            maxOccurrences = Math.max(maxOccurrences, start[num + 1] - start[num]);
+        }
+        int levels = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(1, maxOccurrences - 1)));
+        this.gapMax = new int[levels][];
+        gapMax[0] = new int[positions.length];
+        for (int num = 1; num <= maxNumber; num++) {
+            for (int i = start[num]; i + 1 < start[num + 1]; i++) {
+                gapMax[0][i] = positions[i + 1] - positions[i];
+            }
+        }
+        for (int level = 1; level < levels; level++) {
+            int half = 1 << (level - 1);
+            gapMax[level] = new int[positions.length];
+            for (int num = 1; num <= maxNumber; num++) {
+                int gaps = start[num + 1] - start[num] - 1;
+                for (int i = 0; i + (1 << level) <= gaps; i++) {
+                    int at = start[num] + i;
+                    gapMax[level][at] = Math.max(gapMax[level - 1][at], gapMax[level - 1][at + half]);
+                }
+            }
+        }
+    }
+
+    static WindowIndex of(DrawStore store) {
+        return new WindowIndex(store);
+    }
+
+    // Draw date, or the day of the ISO week for the old draws without a date
+    static int key(int date, int year, int week, int weekday) {
+        if (date != 0) {
+            return date;
+        }
+        try {
+            LocalDate day = LocalDate.of(year, 6, 1)
+                    .with(IsoFields.WEEK_OF_WEEK_BASED_YEAR, week)
+                    .with(DayOfWeek.of(weekday >= 1 && weekday <= 7 ? weekday : 1));
+            return day.getYear() * 10000 + day.getMonthValue() * 100 + day.getDayOfMonth();
+        } catch (DateTimeException e) {
+            return year * 10000 + 101;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // -------------------------------------------------------------------------
+    // Windows: [from, to) of the draw indexes (0 = oldest)
+    // -------------------------------------------------------------------------
+    int[] lastDraws(int count) {
+        return new int[]{Math.max(0, size - count), size};
+    }
+
+    // Draws dated from..to (yyyymmdd, inclusive)
+    int[] dateRange(int fromDate, int toDate) {
+        return new int[]{lowerBound(fromDate), lowerBound(toDate + 1)};
+    }
+
+    private int lowerBound(int key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Window by its text form: "200" (last 200 draws) or a date range
+    // "2020..2023", "2020.03..2021.06.30" (bounds are inclusive).
+    // Returns null if the text is not a window.
+    int[] parse(String spec) {
+        if (spec.matches("\\d+")) {
+            return lastDraws(Integer.parseInt(spec));
+        }
+        int dots = spec.indexOf("..");
+        if (dots < 0) {
+            return null;
+        }
+        int from = parseDate(spec.substring(0, dots), false);
+        int to = parseDate(spec.substring(dots + 2), true);
+        return from < 0 || to < 0 ? null : dateRange(from, to);
+    }
+
+    // yyyy[.mm[.dd]] as yyyymmdd, missing parts at the start or the end of the period
+    private static int parseDate(String text, boolean end) {
+        String[] parts = text.split("\\.");
+        if (parts.length < 1 || parts.length > 3) {
+            return -1;
+        }
+        int[] values = {0, end ? 12 : 1, end ? 31 : 1};
+        for (int i = 0; i < parts.length; i++) {
+            if (!parts[i].matches("\\d{1,4}")) {
+                return -1;
+            }
+            values[i] = Integer.parseInt(parts[i]);
+        }
+        return values[0] * 10000 + values[1] * 100 + values[2];
+    }
+
+    // -------------------------------------------------------------------------
+    // Statistics of a window, O(maxNumber)
+    // -------------------------------------------------------------------------
+    StatsAccumulator stats(int from, int to) {
+        StatsAccumulator acc = new StatsAccumulator(maxNumber);
+        if (from >= to) {
+            return acc;
+        }
+        for (int num = 1; num <= maxNumber; num++) {
+            int first = prefix[from * stride + num];
+            int last = prefix[to * stride + num] - 1;
+            int count = last - first + 1;
+            if (count == 0) continue;
+
+            int firstPosition = positions[start[num] + first];
+            int lastPosition = positions[start[num] + last];
+            acc.occurrences[num] = count;
+            acc.gapCount[num] = count - 1;
+            acc.gapSum[num] = lastPosition - firstPosition;
+            acc.maxGap[num] = count > 1 ? maxGap(num, first, last - 1) : 0;
+            // Positions of the accumulator count from the newest draw of the window
+            acc.newest[num] = to - 1 - lastPosition;
+            acc.oldest[num] = to - 1 - firstPosition;
+        }
+        acc.restore(to - from, rows[to - 1]);
+        return acc;
+    }
+
+    // Max of the gaps i..j (inclusive) of num
+    private int maxGap(int num, int i, int j) {
+        int level = 31 - Integer.numberOfLeadingZeros(j - i + 1);
+        int at = start[num];
+        return Math.max(gapMax[level][at + i], gapMax[level][at + j - (1 << level) + 1]);
+    }
+}
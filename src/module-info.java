@@ -5,4 +5,6 @@
  * 
  */
 module lotto {
-}
\ No newline at end of file
+    requires jdk.httpserver;
+    requires jdk.jfr;
+}
@@ -0,0 +1,151 @@
+package karsaib.lotto;
+
+import static karsaib.lotto.StatsAssertions.assertSameStats;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * Watch mode: ArchiveWatcher hands a burst of writes to a file over once
+ * after the quiet time, and Main.refresh folds the draws prepended to a
+ * watched export, or reads it again if it was replaced by another history.
+ */
+class ArchiveWatcherTest {
+
+    private static final long QUIET = ArchiveWatcher.DEBOUNCE.toMillis();
+
+    @TempDir
+    Path dir;
+
+    private Thread watcher;
+    // Files handed to the listener, in order
+    private final BlockingQueue<Path> changes = new LinkedBlockingQueue<>();
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher.join(5000);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Fixtures
+    // -------------------------------------------------------------------------
+    private void startWatcher() throws InterruptedException {
+        watcher = new Thread(() -> {
+            try {
+                ArchiveWatcher.watch(dir, List.of(Game.values()), (game, file) -> changes.add(file));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        watcher.start();
+        // Registered once the start scan of the (empty) directory is over
+        Thread.sleep(QUIET);
+    }
+
+    private Path next() throws InterruptedException {
+        return changes.poll(10 * QUIET, TimeUnit.MILLISECONDS);
+    }
+
+    private Metrics.Span parsing(Game game) {
+        return new Metrics(game).start(Metrics.Phase.PARSE);
+    }
+
+    // The history without its newest draws (they are on top)
+    private static void dropNewest(Path csv, int dropped) throws IOException {
+        List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        Files.write(csv, lines.subList(dropped, lines.size()), StandardCharsets.UTF_8);
+    }
+
+    // -------------------------------------------------------------------------
+    // Tests
+    // -------------------------------------------------------------------------
+    @Test
+    void burstIsHandedOverOnce() throws IOException, InterruptedException {
+        startWatcher();
+        Path export = dir.resolve("hatos.csv");
+        Files.write(export, new byte[0]);
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(QUIET / 5);
+            Files.writeString(export, "2024;12;2024.03.23.;1;2;3;4;5;6\n", StandardOpenOption.APPEND);
+        }
+        Files.writeString(dir.resolve("notes.txt"), "not an export");
+
+        assertEquals(export, next());
+        assertNull(changes.poll(3 * QUIET, TimeUnit.MILLISECONDS));
+
+        Files.delete(export);
+        assertEquals(export, next());
+        assertFalse(Files.exists(export));
+    }
+
+    @Test
+    void filesOfEveryBurstAreHandedOver() throws IOException, InterruptedException {
+        Files.writeString(dir.resolve("otos.csv"), "");
+        startWatcher();
+        // The export that was there at the start
+        assertEquals(dir.resolve("otos.csv"), changes.poll());
+
+        Files.writeString(dir.resolve("sim-skandi.csv"), "");
+        Files.writeString(dir.resolve("otos.csv"), "2024;12;2024.03.23.;1;2;3;4;5\n");
+        List<Path> burst = new ArrayList<>();
+        burst.add(next());
+        burst.add(next());
+        assertTrue(burst.contains(dir.resolve("sim-skandi.csv")));
+        assertTrue(burst.contains(dir.resolve("otos.csv")));
+        assertNull(changes.poll(3 * QUIET, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void refreshFoldsPrependedDraws() throws IOException {
+        Game game = Game.HATOS;
+        Path export = dir.resolve("hatos.csv");
+        SyntheticHistory.write(export, game, 500, 4L);
+        dropNewest(export, 3);
+        StatsSnapshot known = Main.refresh(export, game, null, parsing(game));
+        assertEquals(497, known.stats.rows());
+
+        // Unchanged content: the known statistics stay
+        assertSame(known, Main.refresh(export, game, known, parsing(game)));
+
+        SyntheticHistory.write(export, game, 500, 4L);
+        StatsSnapshot folded = Main.refresh(export, game, known, parsing(game));
+        StatsSnapshot expected = Main.readFile(export, game, parsing(game));
+        assertEquals(expected.newestKey, folded.newestKey);
+        assertSameStats(expected.stats, folded.stats);
+    }
+
+    @Test
+    void refreshReadsReplacedFile() throws IOException {
+        Game game = Game.OTOS;
+        Path export = dir.resolve("otos.csv");
+        SyntheticHistory.write(export, game, 500, 4L);
+        StatsSnapshot known = Main.refresh(export, game, null, parsing(game));
+
+        // Another, shorter history: the known newest draw is not in it
+        SyntheticHistory.write(export, game, 300, 5L);
+        StatsSnapshot reread = Main.refresh(export, game, known, parsing(game));
+        StatsSnapshot expected = Main.readFile(export, game, parsing(game));
+        assertEquals(300, reread.stats.rows());
+        assertEquals(expected.newestKey, reread.newestKey);
+        assertSameStats(expected.stats, reread.stats);
+    }
+}
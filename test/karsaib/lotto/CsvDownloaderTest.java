@@ -0,0 +1,181 @@
+package karsaib.lotto;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * CsvDownloader against a local HttpServer stand-in of the export: a gzip
+ * download, the 304 of an unchanged export, and a broken transfer resumed
+ * with Range / If-Range. The stand-in serves BODY with ETAG and keeps the
+ * request headers it got.
+ */
+class CsvDownloaderTest {
+
+    private static final byte[] BODY = ("2024;12;2024.03.23.;1;2;3;4;5;6\n".repeat(2000))
+            .getBytes(StandardCharsets.UTF_8);
+    private static final String ETAG = "\"v1\"";
+
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+    private String url;
+    private Path cache;
+    // Request headers of every exchange: If-None-Match, Range, If-Range
+    private final List<String[]> requests = new ArrayList<>();
+    // Bytes of the next body sent before the connection is cut, -1 for the
+    // whole body
+    private volatile int cutAt = -1;
+    private volatile int gzipBodies;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/export.csv", this::serve);
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/export.csv";
+        cache = dir.resolve("hatos.cache");
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    // -------------------------------------------------------------------------
+    // Stand-in of the export server
+    // -------------------------------------------------------------------------
+    private void serve(HttpExchange exchange) throws IOException {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        synchronized (requests) {
+            requests.add(new String[]{ifNoneMatch, range, ifRange});
+        }
+        exchange.getResponseHeaders().set("ETag", ETAG);
+        try (exchange) {
+            if (ETAG.equals(ifNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            if (range != null && ETAG.equals(ifRange)) {
+                int from = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+                exchange.getResponseHeaders().set("Content-Range",
+                        "bytes " + from + "-" + (BODY.length - 1) + "/" + BODY.length);
+                exchange.sendResponseHeaders(206, BODY.length - from);
+                exchange.getResponseBody().write(BODY, from, BODY.length - from);
+                return;
+            }
+            String encoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (cutAt < 0 && encoding != null && encoding.contains("gzip")) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (OutputStream gzip = new GZIPOutputStream(bytes)) {
+                    gzip.write(BODY);
+                }
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                gzipBodies++;
+                exchange.sendResponseHeaders(200, bytes.size());
+                exchange.getResponseBody().write(bytes.toByteArray());
+                return;
+            }
+            // A cut body is shorter than its Content-Length: closing the
+            // exchange drops the connection
+            int length = cutAt < 0 ? BODY.length : cutAt;
+            cutAt = -1;
+            exchange.sendResponseHeaders(200, BODY.length);
+            exchange.getResponseBody().write(BODY, 0, length);
+        }
+    }
+
+    private String[] request(int i) {
+        synchronized (requests) {
+            return requests.get(i);
+        }
+    }
+
+    private Path meta() {
+        return dir.resolve("hatos.cache.meta");
+    }
+
+    // -------------------------------------------------------------------------
+    // Tests
+    // -------------------------------------------------------------------------
+    @Test
+    void downloadsGzipBody() throws IOException {
+        CsvDownloader.Download download = CsvDownloader.fetch(url, cache);
+
+        assertEquals(1, gzipBodies);
+        assertTrue(download.modified);
+        assertArrayEquals(BODY, Files.readAllBytes(cache));
+        assertFalse(Files.exists(dir.resolve("hatos.cache.part")));
+    }
+
+    @Test
+    void notModifiedAfterCommit() throws IOException {
+        CsvDownloader.fetch(url, cache).commit();
+        CsvDownloader.Download download = CsvDownloader.fetch(url, cache);
+
+        assertEquals(ETAG, request(1)[0]);
+        assertFalse(download.modified);
+        assertEquals(0, download.bytes);
+        assertArrayEquals(BODY, Files.readAllBytes(cache));
+    }
+
+    @Test
+    void validatorsKeptOnlyAfterCommit() throws IOException {
+        CsvDownloader.Download download = CsvDownloader.fetch(url, cache);
+        // Not processed yet: no validators, the next run downloads it again
+        assertFalse(Files.exists(meta()));
+        CsvDownloader.Download again = CsvDownloader.fetch(url, cache);
+        assertNull(request(1)[0]);
+        assertTrue(again.modified);
+
+        again.commit();
+        assertTrue(Files.exists(meta()));
+        assertTrue(download.modified);
+    }
+
+    @Test
+    void resumesCutTransfer() throws IOException {
+        cutAt = BODY.length / 3;
+        // The cut stand-in forgets about gzip (identity bodies are resumable)
+        assertThrows(IOException.class, () -> CsvDownloader.fetch(url, cache));
+        assertFalse(Files.exists(cache));
+        Path part = dir.resolve("hatos.cache.part");
+        assertTrue(Files.exists(part));
+        long partial = Files.size(part);
+        assertTrue(partial > 0 && partial < BODY.length);
+
+        CsvDownloader.Download download = CsvDownloader.fetch(url, cache);
+        String[] resumed = request(1);
+        assertEquals("bytes=" + partial + "-", resumed[1]);
+        assertEquals(ETAG, resumed[2]);
+        assertTrue(download.modified);
+        assertEquals(BODY.length - partial, download.bytes);
+        assertArrayEquals(BODY, Files.readAllBytes(cache));
+        assertFalse(Files.exists(part));
+        assertFalse(Files.exists(meta()));
+    }
+}
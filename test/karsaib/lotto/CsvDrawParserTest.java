@@ -0,0 +1,126 @@
+package karsaib.lotto;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/*
+ * CsvDrawParser on fixture lines of the official exports: the first line of
+ * a file (with its BOM and non-numeric prize columns) is a draw and not a
+ * header, and the 21-column 6/45 rows (an empty column or the bonus number
+ * after the six numbers) give the six drawn numbers from the first one on.
+ */
+class CsvDrawParserTest {
+
+    private static final String BOM = "\uFEFF";
+
+    // -------------------------------------------------------------------------
+    // Fixtures
+    // -------------------------------------------------------------------------
+    private static final class Parsed {
+        final List<int[]> rows = new ArrayList<>();
+        final List<DrawKey> keys = new ArrayList<>();
+        final List<Integer> weekdays = new ArrayList<>();
+        int malformed;
+    }
+
+    // Every line of the text through one parser, like MappedCsvReader does
+    private static Parsed parse(Game game, String text) {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        CsvDrawParser parser = new CsvDrawParser(game);
+        Parsed parsed = new Parsed();
+        int from = 0;
+        for (int i = 0; i <= buffer.limit(); i++) {
+            if (i == buffer.limit() || buffer.get(i) == '\n') {
+                if (parser.parseLine(buffer, from, i)) {
+                    parsed.rows.add(parser.row().clone());
+                    parsed.keys.add(parser.key());
+                    parsed.weekdays.add(parser.weekday());
+                }
+                from = i + 1;
+            }
+        }
+        parsed.malformed = parser.malformed();
+        return parsed;
+    }
+
+    // -------------------------------------------------------------------------
+    // Tests
+    // -------------------------------------------------------------------------
+    @Test
+    void firstHatosLineIsDraw() {
+        Parsed parsed = parse(Game.HATOS, BOM
+                + "2026;23;Csütörtök;2026.06.04.;0;0 Ft;0;0;20;359 455 Ft;858;8 380 Ft;13922;3 140 Ft;2;9;15;21;28;35\n"
+                + "2026;22;Vasárnap;2026.05.31.;0;0 Ft;0;0;19;488 455 Ft;961;9 655 Ft;18070;3 125 Ft;7;19;20;41;42;43\n");
+
+        assertEquals(2, parsed.rows.size());
+        assertEquals(0, parsed.malformed);
+        assertArrayEquals(new int[]{2, 9, 15, 21, 28, 35}, parsed.rows.get(0));
+        assertEquals(new DrawKey(2026, 23, 20260604), parsed.keys.get(0));
+        assertEquals(4, (int) parsed.weekdays.get(0));
+        assertArrayEquals(new int[]{7, 19, 20, 41, 42, 43}, parsed.rows.get(1));
+    }
+
+    @Test
+    void hatosRowsOf21Columns() {
+        Parsed parsed = parse(Game.HATOS, BOM
+                + "2016;48;Vasárnap;2016.12.04.;0;0 Ft;0;0;28;583 430 Ft;1890;8 645 Ft;34450;1 845 Ft;2;17;29;37;38;39\n"
+                + "2016;47;Vasárnap;2016.11.27.;0;0 Ft;0;0 Ft;46;324 850 Ft;2366;6 315 Ft;40540;1 435 Ft;4;21;26;31;33;37;\n"
+                + "2016;46;Vasárnap;2016.11.20.;0;0 Ft;0;0 Ft;55;271 785 Ft;2203;6 785 Ft;39090;1 485 Ft;4;9;10;23;36;39;\n"
+                + "1988;43;Vasárnap;;0;0 Ft;0;0 Ft;0;0 Ft;0;0 Ft;0;0 Ft;3;16;24;26;36;40;27\n");
+
+        assertEquals(4, parsed.rows.size());
+        assertEquals(0, parsed.malformed);
+        assertArrayEquals(new int[]{4, 21, 26, 31, 33, 37}, parsed.rows.get(1));
+        assertArrayEquals(new int[]{4, 9, 10, 23, 36, 39}, parsed.rows.get(2));
+        // The bonus number (27) is not a drawn number
+        assertArrayEquals(new int[]{3, 16, 24, 26, 36, 40}, parsed.rows.get(3));
+        assertEquals(new DrawKey(1988, 43, 0), parsed.keys.get(3));
+        assertEquals(7, (int) parsed.weekdays.get(3));
+    }
+
+    @Test
+    void firstOtosAndSkandiLinesAreDraws() {
+        Parsed otos = parse(Game.OTOS, BOM
+                + "2026;40;2026.05.14.;0;0 Ft;4;1 723 337 Ft;4489;4 084 Ft;47 696;1 118 Ft;7;20;42;51;84\n");
+        assertEquals(1, otos.rows.size());
+        assertArrayEquals(new int[]{7, 20, 42, 51, 84}, otos.rows.get(0));
+
+        Parsed skandi = parse(Game.SKANDI, BOM
+                + "2026;40;2026.05.14.;16;729 141 Ft;15;89 510 Ft;18;355 546 Ft;0;113 070 Ft;"
+                + "4;6;9;11;12;18;34;2;3;11;14;15;19;23\n");
+        assertEquals(1, skandi.rows.size());
+        assertArrayEquals(new int[]{4, 6, 9, 11, 12, 18, 34, 2, 3, 11, 14, 15, 19, 23}, skandi.rows.get(0));
+    }
+
+    @Test
+    void headerLineNamesColumns() {
+        Parsed parsed = parse(Game.OTOS, "Év;Hét;Húzás dátuma;5 találat (db);5 találat (Ft);"
+                + "1. szám;2. szám;3. szám;4. szám;5. szám\n"
+                + "2026;40;2026.05.14.;0;0 Ft;7;20;42;51;84\n");
+
+        assertEquals(1, parsed.rows.size());
+        assertEquals(0, parsed.malformed);
+        assertArrayEquals(new int[]{7, 20, 42, 51, 84}, parsed.rows.get(0));
+        assertEquals(new DrawKey(2026, 40, 20260514), parsed.keys.get(0));
+    }
+
+    @Test
+    void linesOutsideThePlanAreMalformed() {
+        Parsed parsed = parse(Game.HATOS,
+                "2026;23;Csütörtök;2026.06.04.;0;0 Ft;0;0;20;359 455 Ft;858;8 380 Ft;13922;3 140 Ft;2;9;15;21;28;35\n"
+                + "2026;22;Vasárnap;2026.05.31.;0;0 Ft;0;0;19;488 455 Ft;961;9 655 Ft;18070;3 125 Ft;7;19;20;41;42;46\n"
+                + "2026;21;Vasárnap;2026.05.24.;0;0 Ft;0;0;19;488 455 Ft;961;9 655 Ft;7;19;20;41;42\n"
+                + "\n"
+                + "összesen;;;\n");
+
+        assertEquals(1, parsed.rows.size());
+        assertEquals(3, parsed.malformed);
+        assertArrayEquals(new int[]{2, 9, 15, 21, 28, 35}, parsed.rows.get(0));
+    }
+}
@@ -0,0 +1,184 @@
+package karsaib.lotto;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * DrawIndex.query against a brute-force scan of the draw store: random
+ * expressions of numbers, year / week ranges and days, combined by AND / OR /
+ * NOT in both spellings, evaluated draw by draw. The store has random years,
+ * weeks and weekdays so every bitmap has set bits all over the history.
+ */
+class DrawIndexTest {
+
+    private static final String[] DAYS = {"mon", "tue", "wednesday", "thu", "péntek", "szombat", "vasárnap"};
+
+    @TempDir
+    Path dir;
+
+    // -------------------------------------------------------------------------
+    // Fixtures
+    // -------------------------------------------------------------------------
+    // A query term or expression with the draws it has to match
+    private record Expr(String text, IntPredicate matches) {
+    }
+
+    private DrawStore store(Game game, int draws, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        Path path = dir.resolve(game.id + "-" + draws + ".draws");
+        int drawings = game.numbersPerRow / game.numbersPerDraw;
+        try (DrawStore.Writer writer = DrawStore.create(path, game, false)) {
+            for (int i = 0; i < draws; i++) {
+                int[] row = new int[game.numbersPerRow];
+                for (int d = 0; d < drawings; d++) {
+                    int[] drawing = random.ints(1, game.maxNumber + 1).distinct().limit(game.numbersPerDraw)
+                            .sorted().toArray();
+                    System.arraycopy(drawing, 0, row, d * game.numbersPerDraw, game.numbersPerDraw);
+                }
+                // Weekday 0: unknown (old draws)
+                writer.add(row, random.nextInt(2000, 2012), random.nextInt(1, 54), random.nextInt(8), 0);
+            }
+            writer.commit();
+        }
+        return DrawStore.open(path);
+    }
+
+    private static boolean drawn(DrawStore store, int i, int num) {
+        for (int d = 0; d < store.numbersPerRow / store.numbersPerDraw; d++) {
+            if (store.contains(i, d, num)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Expr term(DrawStore store, SplittableRandom random) {
+        switch (random.nextInt(4)) {
+            case 0: {
+                int from = random.nextInt(1998, 2014);
+                int to = from + random.nextInt(4);
+                String text = from == to && random.nextBoolean() ? "year=" + from : "year=" + from + ".." + to;
+                return new Expr(text, i -> store.year(i) >= from && store.year(i) <= to);
+            }
+            case 1: {
+                int from = random.nextInt(1, 54);
+                int to = Math.min(53, from + random.nextInt(10));
+                return new Expr("week=" + from + ".." + to, i -> store.week(i) >= from && store.week(i) <= to);
+            }
+            case 2: {
+                int day = random.nextInt(1, 8);
+                String text = "day=" + (random.nextBoolean() ? String.valueOf(day) : DAYS[day - 1]);
+                return new Expr(text, i -> store.weekday(i) == day);
+            }
+            default: {
+                int num = random.nextInt(1, store.maxNumber + 1);
+                return new Expr(String.valueOf(num), i -> drawn(store, i, num));
+            }
+        }
+    }
+
+    // Binary nodes are parenthesized, the precedence has its own test
+    private static Expr expr(DrawStore store, SplittableRandom random, int depth) {
+        if (depth == 0 || random.nextInt(3) == 0) {
+            return term(store, random);
+        }
+        Expr a = expr(store, random, depth - 1);
+        switch (random.nextInt(3)) {
+            case 0: {
+                Expr b = expr(store, random, depth - 1);
+                String op = random.nextBoolean() ? " & " : " and ";
+                return new Expr("(" + a.text + op + b.text + ")", a.matches.and(b.matches));
+            }
+            case 1: {
+                Expr b = expr(store, random, depth - 1);
+                String op = random.nextBoolean() ? " | " : " OR ";
+                return new Expr("(" + a.text + op + b.text + ")", a.matches.or(b.matches));
+            }
+            default:
+                return new Expr((random.nextBoolean() ? "!" : "not ") + a.text, a.matches.negate());
+        }
+    }
+
+    private static int[] scan(DrawStore store, IntPredicate matches) {
+        return IntStream.range(0, store.size()).filter(matches).toArray();
+    }
+
+    private static void assertMatches(DrawIndex index, DrawStore store, Expr expr) {
+        DrawIndex.Bitmap result = index.query(expr.text);
+        assertNotNull(result);
+        int[] expected = scan(store, expr.matches);
+        assertArrayEquals(expected, result.positions(), expr.text);
+        assertEquals(expected.length, result.cardinality(), expr.text);
+    }
+
+    // -------------------------------------------------------------------------
+    // Tests
+    // -------------------------------------------------------------------------
+    @Test
+    void randomExpressionsMatchScan() throws IOException {
+        SplittableRandom random = new SplittableRandom(21L);
+        for (Game game : Game.values()) {
+            // Word boundaries: one word, one word and a bit, many words
+            for (int draws : new int[]{64, 70, 1500}) {
+                DrawStore store = store(game, draws, random.nextLong());
+                DrawIndex index = DrawIndex.of(store);
+                for (int i = 0; i < 300; i++) {
+                    assertMatches(index, store, expr(store, random, 4));
+                }
+            }
+        }
+    }
+
+    @Test
+    void precedence() throws IOException {
+        DrawStore store = store(Game.HATOS, 800, 2L);
+        DrawIndex index = DrawIndex.of(store);
+        IntPredicate seven = i -> drawn(store, i, 7);
+        IntPredicate thirteen = i -> drawn(store, i, 13);
+        IntPredicate year = i -> store.year(i) == 2005;
+
+        // NOT binds tighter than AND, AND tighter than OR
+        assertMatches(index, store, new Expr("7 | 13 & year=2005", seven.or(thirteen.and(year))));
+        assertMatches(index, store, new Expr("year=2005 & 7 | 13", year.and(seven).or(thirteen)));
+        assertMatches(index, store, new Expr("!7 & 13", seven.negate().and(thirteen)));
+        assertMatches(index, store, new Expr("13 & !7", thirteen.and(seven.negate())));
+        assertMatches(index, store, new Expr("not (7 or 13)", seven.or(thirteen).negate()));
+        assertMatches(index, store, new Expr("!!7", seven));
+    }
+
+    @Test
+    void emptyStore() throws IOException {
+        DrawStore store = store(Game.OTOS, 0, 3L);
+        DrawIndex index = DrawIndex.of(store);
+
+        assertEquals(0, index.query("7 | !year=2000").cardinality());
+        assertEquals(0, index.all().cardinality());
+    }
+
+    @Test
+    void parserErrors() throws IOException {
+        DrawStore store = store(Game.OTOS, 100, 4L);
+        DrawIndex index = DrawIndex.of(store);
+
+        for (String text : new String[]{"", "(7 & 13", "7 & 13)", "()", "7 &", "& 7", "7 13", "!",
+                "year=", "year=2010..", "week=..5", "day=", "day=8", "day=x", "color=red", "seven",
+                "0", "91", "999", "7 & 91", "year=99999999999"}) {
+            assertNull(index.query(text), text);
+        }
+        // Out of the index, not an error: no draws
+        assertEquals(0, index.query("year=1950").cardinality());
+        assertEquals(0, index.query("week=60").cardinality());
+        assertEquals(store.size(), index.query("90 | !90").cardinality());
+        assertEquals(scan(store, i -> drawn(store, i, 90)).length, index.query("90").cardinality());
+    }
+}
@@ -0,0 +1,159 @@
+package karsaib.lotto;
+
+import static karsaib.lotto.StatsAssertions.assertSameStats;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * PartitionStats against DrawStore.stats() and against streaming the draws of
+ * each partition, for the three game shapes. Besides a SyntheticHistory, a
+ * store whose year and month columns jump back and forth: its runs of a
+ * month are short and not contiguous, and a year has runs all over the
+ * history, so the parallel acceptOlder joins cover many uneven blocks.
+ */
+class PartitionStatsTest {
+
+    @TempDir
+    Path dir;
+
+    // -------------------------------------------------------------------------
+    // Fixtures
+    // -------------------------------------------------------------------------
+    private DrawStore synthetic(Game game, int draws) throws IOException {
+        Path csv = dir.resolve(game.id + ".csv");
+        SyntheticHistory.write(csv, game, draws, 6L);
+        Path store = dir.resolve(game.id + ".draws");
+        Main.parseCsvContent(csv, game, store, new Metrics(game).start(Metrics.Phase.PARSE));
+        return DrawStore.open(store);
+    }
+
+    // Random rows, years of 2010..2013 and months in any order
+    private DrawStore shuffled(Game game, int draws, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        Path path = dir.resolve(game.id + "-shuffled.draws");
+        int drawings = game.numbersPerRow / game.numbersPerDraw;
+        try (DrawStore.Writer writer = DrawStore.create(path, game, false)) {
+            int year = 2010;
+            int month = 1;
+            for (int i = 0; i < draws; i++) {
+                if (random.nextInt(4) == 0) {
+                    year = random.nextInt(2010, 2014);
+                    month = random.nextInt(1, 13);
+                }
+                int[] row = new int[game.numbersPerRow];
+                for (int d = 0; d < drawings; d++) {
+                    int[] drawing = random.ints(1, game.maxNumber + 1).distinct().limit(game.numbersPerDraw)
+                            .toArray();
+                    System.arraycopy(drawing, 0, row, d * game.numbersPerDraw, game.numbersPerDraw);
+                }
+                int day = random.nextInt(1, 29);
+                writer.add(row, year, 1 + (month - 1) * 4, random.nextInt(8), year * 10000 + month * 100 + day);
+            }
+            writer.commit();
+        }
+        return DrawStore.open(path);
+    }
+
+    // The draws of the store that match, streamed newest first
+    private static StatsAccumulator streamed(DrawStore store, IntPredicate matches) {
+        StatsAccumulator acc = new StatsAccumulator(store.maxNumber);
+        int[][] rows = store.rows();
+        for (int i = store.size() - 1; i >= 0; i--) {
+            if (matches.test(i)) {
+                acc.accept(rows[i]);
+            }
+        }
+        return acc;
+    }
+
+    private static void assertSameNumbers(StatsAccumulator expected, NumberStats actual) {
+        NumberStats stats = NumberStats.of(expected);
+        assertEquals(stats.totalRows, actual.totalRows);
+        for (int num = 1; num <= stats.maxNumber; num++) {
+            assertEquals(stats.occurrences(num), actual.occurrences(num), "occurrences " + num);
+            assertEquals(stats.sinceLast(num), actual.sinceLast(num), "sinceLast " + num);
+            assertEquals(stats.maxGap(num), actual.maxGap(num), "maxGap " + num);
+            assertEquals(stats.avgGap(num), actual.avgGap(num), "avgGap " + num);
+            assertEquals(stats.score(num), actual.score(num), "score " + num);
+        }
+    }
+
+    private static void assertPartitions(DrawStore store) {
+        PartitionStats partitions = PartitionStats.of(store);
+        assertSameStats(store.stats(), partitions.global());
+
+        // Years: every draw of the year, wherever it is
+        List<Integer> years = new ArrayList<>();
+        for (int i = 0; i < store.size(); i++) {
+            if (!years.contains(store.year(i))) {
+                years.add(store.year(i));
+            }
+        }
+        years.sort(null);
+        List<Report.Window> yearWindows = partitions.lastYears(Integer.MAX_VALUE);
+        assertEquals(years.size(), yearWindows.size());
+        for (int y = 0; y < years.size(); y++) {
+            int year = years.get(y);
+            assertEquals(String.valueOf(year), yearWindows.get(y).label());
+            assertSameNumbers(streamed(store, i -> store.year(i) == year), yearWindows.get(y).stats());
+        }
+
+        // Months: one window per run, in store order
+        List<Report.Window> monthWindows = partitions.lastMonths(Integer.MAX_VALUE);
+        int run = 0;
+        for (int from = 0; from < store.size(); run++) {
+            int to = from + 1;
+            while (to < store.size() && store.year(to) == store.year(from)
+                    && store.date(to) / 100 % 100 == store.date(from) / 100 % 100) {
+                to++;
+            }
+            int start = from;
+            int end = to;
+            assertSameNumbers(streamed(store, i -> i >= start && i < end), monthWindows.get(run).stats());
+            from = to;
+        }
+        assertEquals(run, monthWindows.size());
+
+        // Weekdays with a draw, Monday first
+        List<Report.Window> dayWindows = partitions.weekdays();
+        int w = 0;
+        for (int day = 1; day <= 7; day++) {
+            int weekday = day;
+            StatsAccumulator expected = streamed(store, i -> store.weekday(i) == weekday);
+            if (expected.rows() > 0) {
+                assertSameNumbers(expected, dayWindows.get(w++).stats());
+            }
+        }
+        assertEquals(w, dayWindows.size());
+    }
+
+    // -------------------------------------------------------------------------
+    // Tests
+    // -------------------------------------------------------------------------
+    @Test
+    void syntheticHistories() throws IOException {
+        for (Game game : Game.values()) {
+            assertPartitions(synthetic(game, 1500));
+        }
+    }
+
+    @Test
+    void yearsAndMonthsOutOfOrder() throws IOException {
+        for (Game game : Game.values()) {
+            assertPartitions(shuffled(game, 2000, game.ordinal()));
+        }
+    }
+
+    @Test
+    void singleDraw() throws IOException {
+        assertPartitions(shuffled(Game.HATOS, 1, 9L));
+    }
+}
@@ -0,0 +1,71 @@
+package karsaib.lotto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Report.appendFixed against String.format(Locale.US, "%.Nf"): random values,
+ * values at or next to a rounding tie (x.5 of the last decimal, whose binary
+ * form is slightly below or above), signs and the special values.
+ */
+class ReportTest {
+
+    private static final int MAX_DECIMALS = 6;
+
+    // -------------------------------------------------------------------------
+    // Fixtures
+    // -------------------------------------------------------------------------
+    private static void assertFormat(double value) {
+        for (int decimals = 0; decimals <= MAX_DECIMALS; decimals++) {
+            String expected = String.format(Locale.US, "%." + decimals + "f", value);
+            String actual = Report.appendFixed(new StringBuilder(), value, decimals).toString();
+            assertEquals(expected, actual, value + " with " + decimals + " decimals");
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Tests
+    // -------------------------------------------------------------------------
+    @Test
+    void randomValues() {
+        SplittableRandom random = new SplittableRandom(5L);
+        for (int i = 0; i < 20_000; i++) {
+            assertFormat(random.nextDouble());
+            assertFormat(random.nextDouble(-1000.0, 1000.0));
+            assertFormat(random.nextDouble() * Math.pow(10, random.nextInt(-8, 15)));
+        }
+    }
+
+    @Test
+    void nearTies() {
+        // Classic cases: the binary form of 2.675 is below the tie, of 0.125 exact
+        for (double value : new double[]{0.5, 1.5, 2.5, 0.125, 0.375, 1.005, 2.675, 1.045, 8.345, 0.0005,
+                1234.5675, 99.995, 9.9995, 0.45, 0.55}) {
+            assertFormat(value);
+            assertFormat(-value);
+        }
+        // k + 0.5 of the last decimal and the doubles right next to it
+        SplittableRandom random = new SplittableRandom(9L);
+        for (int i = 0; i < 20_000; i++) {
+            int decimals = random.nextInt(MAX_DECIMALS + 1);
+            long units = random.nextLong(10_000_000L);
+            double tie = new BigDecimal(units).add(new BigDecimal("0.5")).movePointLeft(decimals).doubleValue();
+            assertFormat(tie);
+            assertFormat(Math.nextUp(tie));
+            assertFormat(Math.nextDown(tie));
+        }
+    }
+
+    @Test
+    void signsAndSpecialValues() {
+        for (double value : new double[]{0.0, -0.0, -0.0004, -0.5, 1e-12, -1e-12, 1e17, -1e17, 9.2e18,
+                Double.MAX_VALUE, Double.MIN_VALUE, Double.NaN, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY}) {
+            assertFormat(value);
+        }
+    }
+}
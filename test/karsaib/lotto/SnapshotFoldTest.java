@@ -0,0 +1,147 @@
+package karsaib.lotto;
+
+import static karsaib.lotto.StatsAssertions.assertSameStats;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * Incremental update of Main.update without the download: the snapshot of the
+ * older part of a SyntheticHistory, saved and loaded again, with the newest
+ * draws folded in must equal a full parse of the whole history, and so must
+ * the draw store. A corrupt snapshot, one of another game and a history
+ * without the snapshot's newest draw fall back to the full rebuild.
+ */
+class SnapshotFoldTest {
+
+    private static final int DRAWS = 600;
+    private static final int NEW_DRAWS = 37;
+
+    @TempDir
+    Path dir;
+
+    // -------------------------------------------------------------------------
+    // Fixtures
+    // -------------------------------------------------------------------------
+    private Metrics.Span parsing(Game game) {
+        return new Metrics(game).start(Metrics.Phase.PARSE);
+    }
+
+    // The history without its newest draws (they are on top)
+    private Path older(Path full, int dropped) throws IOException {
+        List<String> lines = Files.readAllLines(full, StandardCharsets.UTF_8);
+        Path older = dir.resolve("older-" + full.getFileName());
+        Files.write(older, lines.subList(dropped, lines.size()), StandardCharsets.UTF_8);
+        return older;
+    }
+
+    // Snapshot of the older part, through a save / load round trip
+    private StatsSnapshot snapshot(Path csv, Game game, Path store) throws IOException {
+        Path file = dir.resolve(game.id + ".snapshot");
+        Main.parseCsvContent(csv, game, store, parsing(game)).save(file, game);
+        return StatsSnapshot.load(file, game);
+    }
+
+    private static void assertSameStore(DrawStore expected, DrawStore actual) {
+        assertEquals(expected.size(), actual.size());
+        int[][] expectedRows = expected.rows();
+        int[][] actualRows = actual.rows();
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.key(i), actual.key(i));
+            assertEquals(expected.weekday(i), actual.weekday(i));
+            assertArrayEquals(expectedRows[i], actualRows[i]);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Tests
+    // -------------------------------------------------------------------------
+    @Test
+    void foldEqualsFullParse() throws IOException {
+        for (Game game : Game.values()) {
+            Path full = dir.resolve(game.id + ".csv");
+            SyntheticHistory.write(full, game, DRAWS, 7L);
+            Path store = dir.resolve(game.id + ".draws");
+
+            StatsSnapshot snapshot = snapshot(older(full, NEW_DRAWS), game, store);
+            assertNotNull(snapshot);
+            assertEquals(DRAWS - NEW_DRAWS, snapshot.stats.rows());
+            StatsSnapshot folded = Main.foldNewDraws(full, game, snapshot, store, parsing(game));
+            assertNotNull(folded);
+
+            StatsSnapshot expected = Main.readFile(full, game, parsing(game));
+            assertEquals(expected.newestKey, folded.newestKey);
+            assertSameStats(expected.stats, folded.stats);
+
+            Path rebuilt = dir.resolve(game.id + "-full.draws");
+            Main.parseCsvContent(full, game, rebuilt, parsing(game));
+            assertSameStore(DrawStore.open(rebuilt), DrawStore.open(store));
+            assertSameStats(expected.stats, DrawStore.open(store).stats());
+        }
+    }
+
+    @Test
+    void foldWithoutNewDraws() throws IOException {
+        Game game = Game.HATOS;
+        Path full = dir.resolve("hatos.csv");
+        SyntheticHistory.write(full, game, DRAWS, 7L);
+        Path store = dir.resolve("hatos.draws");
+
+        StatsSnapshot snapshot = snapshot(full, game, store);
+        StatsSnapshot folded = Main.foldNewDraws(full, game, snapshot, store, parsing(game));
+
+        assertEquals(snapshot.newestKey, folded.newestKey);
+        assertSameStats(Main.readFile(full, game, parsing(game)).stats, folded.stats);
+        assertEquals(DRAWS, DrawStore.open(store).size());
+    }
+
+    @Test
+    void corruptSnapshotIsNotLoaded() throws IOException {
+        Game game = Game.OTOS;
+        Path full = dir.resolve("otos.csv");
+        SyntheticHistory.write(full, game, DRAWS, 7L);
+        snapshot(full, game, dir.resolve("otos.draws"));
+
+        Path file = dir.resolve("otos.snapshot");
+        byte[] content = Files.readAllBytes(file);
+        content[content.length / 2] ^= 1;
+        Files.write(file, content);
+
+        assertNull(StatsSnapshot.load(file, game));
+    }
+
+    @Test
+    void snapshotOfAnotherGameIsNotLoaded() throws IOException {
+        Path full = dir.resolve("otos.csv");
+        SyntheticHistory.write(full, Game.OTOS, DRAWS, 7L);
+        snapshot(full, Game.OTOS, dir.resolve("otos.draws"));
+
+        assertNull(StatsSnapshot.load(dir.resolve("otos.snapshot"), Game.HATOS));
+    }
+
+    @Test
+    void missingNewestDrawLeavesStore() throws IOException {
+        Game game = Game.SKANDI;
+        Path full = dir.resolve("skandi.csv");
+        SyntheticHistory.write(full, game, DRAWS, 7L);
+        Path store = dir.resolve("skandi.draws");
+        StatsSnapshot snapshot = snapshot(older(full, NEW_DRAWS), game, store);
+
+        // The history ends one draw before the snapshot's newest draw
+        // (a replaced export), the draw key is never reached
+        Path replaced = dir.resolve("replaced.csv");
+        SyntheticHistory.write(replaced, game, DRAWS - NEW_DRAWS - 1, 8L);
+        assertNull(Main.foldNewDraws(replaced, game, snapshot, store, parsing(game)));
+
+        assertEquals(DRAWS - NEW_DRAWS, DrawStore.open(store).size());
+    }
+}
@@ -0,0 +1,29 @@
+package karsaib.lotto;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * Field by field comparison of two StatsAccumulator states. newest / oldest
+ * are positions relative to each accumulator's own top, so they are compared
+ * as latestRow / oldestRow.
+ */
+final class StatsAssertions {
+
+    private StatsAssertions() {
+    }
+
+    static void assertSameStats(StatsAccumulator expected, StatsAccumulator actual) {
+        assertEquals(expected.maxNumber, actual.maxNumber);
+        assertEquals(expected.rows(), actual.rows());
+        assertArrayEquals(expected.firstRow(), actual.firstRow());
+        assertArrayEquals(expected.occurrences, actual.occurrences, "occurrences");
+        assertArrayEquals(expected.maxGap, actual.maxGap, "maxGap");
+        assertArrayEquals(expected.gapSum, actual.gapSum, "gapSum");
+        assertArrayEquals(expected.gapCount, actual.gapCount, "gapCount");
+        for (int num = 1; num <= expected.maxNumber; num++) {
+            assertEquals(expected.latestRow(num), actual.latestRow(num), "latestRow " + num);
+            assertEquals(expected.oldestRow(num), actual.oldestRow(num), "oldestRow " + num);
+        }
+    }
+}
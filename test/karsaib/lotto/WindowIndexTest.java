@@ -0,0 +1,99 @@
+package karsaib.lotto;
+
+import static karsaib.lotto.StatsAssertions.assertSameStats;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * Window statistics of WindowIndex against streaming the window's draws into
+ * a StatsAccumulator (newest first), on the draw store of a SyntheticHistory:
+ * every window of a short history, random windows of a long one, and the
+ * windows of the text forms.
+ */
+class WindowIndexTest {
+
+    @TempDir
+    Path dir;
+
+    // -------------------------------------------------------------------------
+    // Fixtures
+    // -------------------------------------------------------------------------
+    private DrawStore store(Game game, int draws) throws IOException {
+        Path csv = dir.resolve(game.id + ".csv");
+        SyntheticHistory.write(csv, game, draws, 3L);
+        Path store = dir.resolve(game.id + ".draws");
+        Main.parseCsvContent(csv, game, store, new Metrics(game).start(Metrics.Phase.PARSE));
+        return DrawStore.open(store);
+    }
+
+    private static StatsAccumulator streamed(DrawStore store, int[][] rows, int from, int to) {
+        StatsAccumulator acc = new StatsAccumulator(store.maxNumber);
+        for (int t = to - 1; t >= from; t--) {
+            acc.accept(rows[t]);
+        }
+        return acc;
+    }
+
+    // -------------------------------------------------------------------------
+    // Tests
+    // -------------------------------------------------------------------------
+    @Test
+    void everyWindowOfShortHistory() throws IOException {
+        for (Game game : Game.values()) {
+            DrawStore store = store(game, 40);
+            int[][] rows = store.rows();
+            WindowIndex index = WindowIndex.of(store);
+
+            for (int from = 0; from < rows.length; from++) {
+                for (int to = from + 1; to <= rows.length; to++) {
+                    assertSameStats(streamed(store, rows, from, to), index.stats(from, to));
+                }
+            }
+            assertEquals(0, index.stats(5, 5).rows());
+        }
+    }
+
+    @Test
+    void randomWindowsOfLongHistory() throws IOException {
+        DrawStore store = store(Game.OTOS, 3000);
+        int[][] rows = store.rows();
+        WindowIndex index = WindowIndex.of(store);
+        SplittableRandom random = new SplittableRandom(11L);
+
+        for (int i = 0; i < 300; i++) {
+            int from = random.nextInt(rows.length);
+            int to = random.nextInt(from + 1, rows.length + 1);
+            assertSameStats(streamed(store, rows, from, to), index.stats(from, to));
+        }
+        assertSameStats(store.stats(), index.stats(0, rows.length));
+    }
+
+    @Test
+    void windowsOfTextForms() throws IOException {
+        // One draw a week from the first Saturday of 2000 (see SyntheticHistory)
+        DrawStore store = store(Game.HATOS, 600);
+        WindowIndex index = WindowIndex.of(store);
+
+        assertArrayEquals(new int[]{400, 600}, index.parse("200"));
+        assertArrayEquals(new int[]{0, 600}, index.parse("5000"));
+        int[] year = index.parse("2001..2001");
+        for (int t = 0; t < store.size(); t++) {
+            boolean inside = store.date(t) / 10000 == 2001;
+            assertEquals(inside, t >= year[0] && t < year[1], "draw " + t);
+        }
+        int[] months = index.parse("2003.03..2003.05.31");
+        for (int t = 0; t < store.size(); t++) {
+            boolean inside = store.date(t) >= 20030301 && store.date(t) <= 20030531;
+            assertEquals(inside, t >= months[0] && t < months[1], "draw " + t);
+        }
+        assertNull(index.parse("last"));
+        assertNull(index.parse("2001..x"));
+    }
+}